@@ -0,0 +1,219 @@
+package com.meshjoin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//a small blocking pool of JDBC connections to the source and warehouse databases, shared by all runs
+//of a load. at most maxConnections are open at once, idle ones included: a borrower waits for one to
+//be returned, and an idle connection to another database is closed to make room. close() on a
+//borrowed connection hands it back, rolled back and in auto-commit mode, for the next borrower of the
+//same URL; a connection that fails isValid is replaced. a borrower that replaces a dead or an evicted
+//connection keeps its slot while doing so, and physical connections are only closed outside the
+//pool's monitor, so a slow close never holds up the other borrowers
+class ConnectionPool implements AutoCloseable {
+
+    //seconds isValid may take on a connection that is handed out again
+    private static final int VALIDATION_TIMEOUT = 2;
+
+    private final String user;
+    private final String password;
+    private final int maxConnections;
+
+    //guarded by this
+    private final Map<String, ArrayDeque<Connection>> idle = new HashMap<>();
+    //slots taken: connections idle, borrowed or being opened or replaced by a borrower
+    private int open;
+    private boolean closed;
+
+    ConnectionPool(String user, String password, int maxConnections) {
+        this.user = user;
+        this.password = password;
+        this.maxConnections = maxConnections;
+    }
+
+    int getMaxConnections() {
+        return maxConnections;
+    }
+
+    //an idle connection to url, a new one while there is room, else waits until one is returned
+    Connection borrow(String url) throws SQLException, InterruptedException {
+        Connection physical = null;
+        //an idle connection to another database whose slot this borrower takes over
+        Connection evicted = null;
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new SQLException("The connection pool is closed");
+                }
+                ArrayDeque<Connection> connections = idle.get(url);
+                if (connections != null && !connections.isEmpty()) {
+                    physical = connections.pop();
+                    break;
+                }
+                if (open < maxConnections) {
+                    open++;
+                    break;
+                }
+                evicted = takeIdle();
+                if (evicted != null) {
+                    break;
+                }
+                wait();
+            }
+        }
+        //the borrower holds one slot from here on, whatever it has to close and open to fill it
+        if (evicted != null) {
+            closeQuietly(evicted);
+        }
+        if (physical != null && !isValid(physical)) {
+            closeQuietly(physical);
+            physical = null;
+        }
+        if (physical == null) {
+            try {
+                physical = DriverManager.getConnection(url, user, password);
+            } catch (SQLException e) {
+                release();
+                throw e;
+            }
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                new Borrowed(url, physical));
+    }
+
+    //closes the idle connections, the borrowed ones are closed as they come back
+    @Override
+    public void close() {
+        List<Connection> idleConnections = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (ArrayDeque<Connection> connections : idle.values()) {
+                idleConnections.addAll(connections);
+                connections.clear();
+            }
+            open -= idleConnections.size();
+            notifyAll();
+        }
+        for (Connection physical : idleConnections) {
+            closeQuietly(physical);
+        }
+    }
+
+    private void giveBack(String url, Connection physical) {
+        boolean reusable;
+        try {
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            reusable = true;
+        } catch (SQLException e) {
+            reusable = false;
+        }
+        synchronized (this) {
+            if (reusable && !closed) {
+                idle.computeIfAbsent(url, key -> new ArrayDeque<>()).push(physical);
+                notifyAll();
+                return;
+            }
+        }
+        discard(physical);
+    }
+
+    private void discard(Connection physical) {
+        closeQuietly(physical);
+        release();
+    }
+
+    private synchronized void release() {
+        open--;
+        notifyAll();
+    }
+
+    //removes the longest idle connection to another database, whose slot then passes to the borrower
+    //that closes it; null when there is none
+    private Connection takeIdle() {
+        for (ArrayDeque<Connection> connections : idle.values()) {
+            if (!connections.isEmpty()) {
+                return connections.removeLast();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isValid(Connection physical) {
+        try {
+            return physical.isValid(VALIDATION_TIMEOUT);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection physical) {
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            System.err.println("Could not close a pooled connection: " + e);
+        }
+    }
+
+    //the borrower's view of a pooled connection: close() returns it, everything else goes to the driver
+    private final class Borrowed implements InvocationHandler {
+
+        private final String url;
+        private Connection physical;
+
+        Borrowed(String url, Connection physical) {
+            this.url = url;
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "pooled connection to " + url;
+                }
+                case "close" -> {
+                    if (physical != null) {
+                        Connection returned = physical;
+                        physical = null;
+                        giveBack(url, returned);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    if (physical == null) {
+                        return true;
+                    }
+                }
+                default -> {
+                    if (physical == null) {
+                        throw new SQLException("The connection has been returned to the pool");
+                    }
+                }
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
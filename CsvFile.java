@@ -0,0 +1,299 @@
+package com.meshjoin;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+
+//forward-only cursor over a memory-mapped CSV file. fields are located as byte ranges in the mapping
+//and numbers, prices and dates are parsed straight from the bytes, so only string fields allocate.
+//the file is mapped in regions, a record cut by the end of a region is re-read from a new mapping.
+//columns are found by header name with case, spaces and underscores ignored ("Order ID", "ORDER_ID"
+//and "orderId" are the same column). quoted fields may contain commas and "" but not line breaks
+class CsvFile implements AutoCloseable {
+
+    private static final long REGION_SIZE = 256L * 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final String[] header;
+
+    private MappedByteBuffer region;
+    private long regionStart;
+    private int position;
+
+    //current record: file offset and the byte range of every field within the region
+    private long recordOffset;
+    private int fieldCount;
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private boolean[] fieldQuoted = new boolean[16];
+
+    CsvFile(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        map(0);
+        if (!next()) {
+            channel.close();
+            throw new IOException(path + " has no header row");
+        }
+        header = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            header[i] = normalize(getString(i));
+        }
+    }
+
+    //index of the first column whose header matches one of the names
+    int column(String... names) throws IOException {
+        for (String name : names) {
+            int index = Arrays.asList(header).indexOf(normalize(name));
+            if (index >= 0) {
+                return index;
+            }
+        }
+        throw new IOException(path + " has no column " + String.join(" or ", names));
+    }
+
+    //moves to the next non-blank record, false at the end of the file
+    boolean next() throws IOException {
+        while (true) {
+            int lineEnd = indexOfNewline(position);
+            if (lineEnd < 0) {
+                boolean lastRegion = regionStart + region.limit() >= fileSize;
+                if (lastRegion) {
+                    if (position >= region.limit()) {
+                        return false;
+                    }
+                    lineEnd = region.limit();
+                } else if (position == 0) {
+                    throw new IOException("Record at offset " + regionStart + " of " + path + " is longer than " + REGION_SIZE + " bytes");
+                } else {
+                    map(regionStart + position);
+                    continue;
+                }
+            }
+            recordOffset = regionStart + position;
+            int start = position;
+            position = lineEnd + 1;
+            int end = lineEnd;
+            if (end > start && region.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end > start) {
+                split(start, end);
+                return true;
+            }
+        }
+    }
+
+    //repositions the cursor on a record offset returned by recordOffset()
+    void seek(long offset) throws IOException {
+        if (offset >= regionStart && offset < regionStart + region.limit()) {
+            position = (int) (offset - regionStart);
+        } else {
+            map(offset);
+        }
+    }
+
+    long recordOffset() {
+        return recordOffset;
+    }
+
+    int getInt(int column) throws IOException {
+        checkColumn(column);
+        int i = skipSpaces(fieldStart[column], fieldEnd[column]);
+        int end = trimSpaces(i, fieldEnd[column]);
+        boolean negative = i < end && region.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i >= end) {
+            throw malformed(column);
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = region.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw malformed(column);
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw malformed(column);
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw malformed(column);
+        }
+        return (int) value;
+    }
+
+    //decimal amount; a currency sign before or after the number is ignored, as in "1299.99$"
+    double getPrice(int column) throws IOException {
+        checkColumn(column);
+        long mantissa = 0;
+        int decimals = -1;
+        int digits = 0;
+        boolean negative = false;
+        for (int i = fieldStart[column]; i < fieldEnd[column]; i++) {
+            byte b = region.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b == '-' && digits == 0) {
+                negative = true;
+            } else if (b != '$' && b != ' ') {
+                throw malformed(column);
+            }
+        }
+        if (digits == 0 || digits > 18) {
+            throw malformed(column);
+        }
+        double value = decimals > 0 ? mantissa / Math.pow(10, decimals) : mantissa;
+        return negative ? -value : value;
+    }
+
+    //true for a field with nothing but spaces in it, which is how a CSV leaves a value out
+    boolean isBlank(int column) throws IOException {
+        checkColumn(column);
+        return skipSpaces(fieldStart[column], fieldEnd[column]) == fieldEnd[column];
+    }
+
+    //date of a "yyyy-MM-dd" or "yyyy-MM-dd HH:mm:ss" field; the time of day is dropped like ORDER_DATE DATE does
+    LocalDate getDate(int column) throws IOException {
+        checkColumn(column);
+        int i = skipSpaces(fieldStart[column], fieldEnd[column]);
+        if (fieldEnd[column] - i < 10 || region.get(i + 4) != '-' || region.get(i + 7) != '-') {
+            throw malformed(column);
+        }
+        try {
+            return LocalDate.of(digits(column, i, 4), digits(column, i + 5, 2), digits(column, i + 8, 2));
+        } catch (DateTimeException e) {
+            throw malformed(column);
+        }
+    }
+
+    String getString(int column) throws IOException {
+        checkColumn(column);
+        byte[] bytes = new byte[fieldEnd[column] - fieldStart[column]];
+        region.get(fieldStart[column], bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        return fieldQuoted[column] ? value.replace("\"\"", "\"") : value.trim();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void map(long offset) throws IOException {
+        regionStart = offset;
+        region = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(REGION_SIZE, fileSize - offset));
+        position = 0;
+    }
+
+    private int indexOfNewline(int from) {
+        int limit = region.limit();
+        for (int i = from; i < limit; i++) {
+            if (region.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void split(int start, int end) throws IOException {
+        fieldCount = 0;
+        int i = start;
+        while (true) {
+            if (fieldCount == fieldStart.length) {
+                fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+                fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+                fieldQuoted = Arrays.copyOf(fieldQuoted, fieldCount * 2);
+            }
+            int field = fieldCount++;
+            if (i < end && region.get(i) == '"') {
+                // quoted field, "" is an escaped quote
+                int j = i + 1;
+                while (j < end && !(region.get(j) == '"' && (j + 1 >= end || region.get(j + 1) != '"'))) {
+                    j += region.get(j) == '"' ? 2 : 1;
+                }
+                if (j >= end) {
+                    throw new IOException("Unterminated quote in record at offset " + recordOffset + " of " + path);
+                }
+                fieldStart[field] = i + 1;
+                fieldEnd[field] = j;
+                fieldQuoted[field] = true;
+                i = j + 1;
+            } else {
+                int j = i;
+                while (j < end && region.get(j) != ',') {
+                    j++;
+                }
+                fieldStart[field] = i;
+                fieldEnd[field] = j;
+                fieldQuoted[field] = false;
+                i = j;
+            }
+            if (i >= end) {
+                return;
+            }
+            i++; // skip the comma
+        }
+    }
+
+    private int digits(int column, int from, int count) throws IOException {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = region.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw malformed(column);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private int skipSpaces(int from, int end) {
+        while (from < end && region.get(from) == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimSpaces(int from, int end) {
+        while (end > from && region.get(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private void checkColumn(int column) throws IOException {
+        if (column >= fieldCount) {
+            throw new IOException("Record at offset " + recordOffset + " of " + path + " has no column " + column);
+        }
+    }
+
+    private IOException malformed(int column) throws IOException {
+        String name = header == null ? String.valueOf(column) : header[column];
+        return new IOException("Malformed value '" + getString(column) + "' in column " + name
+                + " of the record at offset " + recordOffset + " of " + path);
+    }
+
+    private static String normalize(String name) {
+        return name.replace("\uFEFF", "").replace(" ", "").replace("_", "").toLowerCase(Locale.ROOT);
+    }
+}
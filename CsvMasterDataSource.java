@@ -0,0 +1,137 @@
+package com.meshjoin;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//master data read straight from customers.csv and products.csv. each file is scanned once up front
+//to record the offset of every row, then a partition is read by seeking to the offset of its first
+//row, so a cyclic scan never re-parses the rows before it. rows repeating a key already seen are
+//left out, like the LOAD DATA into the primary-keyed source tables does
+class CsvMasterDataSource implements MasterDataSource, AutoCloseable {
+
+    private final CsvFile customers;
+    private final CsvFile products;
+
+    private final int customerId;
+    private final int customerName;
+    private final int gender;
+    private final long[] customerOffsets;
+
+    private final int productId;
+    private final int productName;
+    private final int productPrice;
+    private final int storeId;
+    private final int storeName;
+    private final int supplierId;
+    private final int supplierName;
+    private final long[] productOffsets;
+
+    CsvMasterDataSource(Path customersFile, Path productsFile) throws IOException {
+        this.customers = new CsvFile(customersFile);
+        try {
+            this.products = new CsvFile(productsFile);
+        } catch (IOException e) {
+            customers.close();
+            throw e;
+        }
+        try {
+            this.customerId = customers.column("customer_id");
+            this.customerName = customers.column("customer_name");
+            this.gender = customers.column("gender");
+            this.customerOffsets = indexRows(customers, customerId);
+
+            this.productId = products.column("product_id");
+            this.productName = products.column("product_name");
+            this.productPrice = products.column("product_price");
+            this.storeId = products.column("store_id");
+            this.storeName = products.column("store_name");
+            this.supplierId = products.column("supplier_id");
+            this.supplierName = products.column("supplier_name");
+            this.productOffsets = indexRows(products, productId);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int customerCount() {
+        return customerOffsets.length;
+    }
+
+    @Override
+    public int productCount() {
+        return productOffsets.length;
+    }
+
+    @Override
+    public List<Customer> loadCustomers(int offset, int limit) throws SQLException {
+        int end = Math.min(customerOffsets.length, offset + limit);
+        List<Customer> partition = new ArrayList<>(Math.max(0, end - offset));
+        try {
+            for (int row = offset; row < end; row++) {
+                customers.seek(customerOffsets[row]);
+                customers.next();
+                partition.add(new Customer(customers.getInt(customerId), customers.getString(customerName),
+                        customers.getString(gender)));
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not read customers partition at row " + offset, e);
+        }
+        return partition;
+    }
+
+    @Override
+    public List<Product> loadProducts(int offset, int limit) throws SQLException {
+        int end = Math.min(productOffsets.length, offset + limit);
+        List<Product> partition = new ArrayList<>(Math.max(0, end - offset));
+        try {
+            for (int row = offset; row < end; row++) {
+                products.seek(productOffsets[row]);
+                products.next();
+                //like JdbcMasterDataSource, a product without a store is left to the unmatched file
+                if (products.isBlank(storeId)) {
+                    continue;
+                }
+                partition.add(new Product(products.getInt(productId), products.getString(productName),
+                        products.getPrice(productPrice), products.getInt(storeId), products.getString(storeName),
+                        products.getInt(supplierId), products.getString(supplierName)));
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not read products partition at row " + offset, e);
+        }
+        return partition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            customers.close();
+        } finally {
+            if (products != null) {
+                products.close();
+            }
+        }
+    }
+
+    //offsets of the data rows with a key not seen before, in file order
+    private static long[] indexRows(CsvFile file, int keyColumn) throws IOException {
+        long[] offsets = new long[1024];
+        int rows = 0;
+        IntHashSet seenKeys = new IntHashSet();
+        while (file.next()) {
+            if (!seenKeys.add(file.getInt(keyColumn))) {
+                continue;
+            }
+            if (rows == offsets.length) {
+                offsets = Arrays.copyOf(offsets, rows * 2);
+            }
+            offsets[rows++] = file.recordOffset();
+        }
+        return Arrays.copyOf(offsets, rows);
+    }
+}
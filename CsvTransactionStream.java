@@ -0,0 +1,108 @@
+package com.meshjoin;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+//streams transactions.csv into the join in chunks of limit rows, in file order, without a source
+//database in between. ORDER_DATE keeps only the date of the "2019-04-01 03:09:00" timestamps, as
+//loading the file into the DATE column does, an empty one is read as no date like a NULL ORDER_DATE,
+//and a repeated ORDER_ID is skipped like LOAD DATA skips it.
+//the duplicate check only remembers the last DUPLICATE_WINDOW to 2 * DUPLICATE_WINDOW ORDER_IDs, so the
+//stream needs the same memory for any file size; a repeat farther back than that is loaded again and
+//overwrites the fact, which is what the writers do with any ORDER_ID that is already in sales
+class CsvTransactionStream implements MeshJoinEngine.TransactionStream, AutoCloseable {
+
+    //a progress line is printed every this many chunks
+    private static final int PROGRESS_INTERVAL = 50;
+    //ORDER_IDs per generation of the duplicate check
+    static final int DUPLICATE_WINDOW = 1 << 16;
+
+    private final Path path;
+    private final CsvFile file;
+    private final int limit;
+
+    private final int orderId;
+    private final int orderDate;
+    private final int productId;
+    private final int quantity;
+    private final int customerId;
+    private final int timeId;
+
+    //the ORDER_IDs of the current and the previous generation; once the current one is full it
+    //replaces the previous one, whose set is emptied and reused
+    private IntHashSet seenOrderIds = new IntHashSet(DUPLICATE_WINDOW);
+    private IntHashSet previousOrderIds = new IntHashSet(DUPLICATE_WINDOW);
+    private long rowsRead;
+    private int chunksRead;
+    private boolean exhausted;
+    private final long startNanos = System.nanoTime();
+
+    CsvTransactionStream(Path transactionsFile, int limit) throws IOException {
+        this.path = transactionsFile;
+        this.file = new CsvFile(transactionsFile);
+        this.limit = limit;
+        try {
+            this.orderId = file.column("Order ID");
+            this.orderDate = file.column("Order Date");
+            this.productId = file.column("Product ID");
+            this.quantity = file.column("Quantity Ordered", "Quantity");
+            this.customerId = file.column("Customer ID");
+            this.timeId = file.column("Time ID");
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public TransactionChunk nextChunk() throws SQLException {
+        if (exhausted) {
+            return TransactionChunk.EMPTY;
+        }
+        TransactionChunk chunk = new TransactionChunk(limit);
+        try {
+            while (chunk.size() < limit) {
+                if (!file.next()) {
+                    exhausted = true;
+                    break;
+                }
+                int id = file.getInt(orderId);
+                if (!previousOrderIds.contains(id) && seenOrderIds.add(id)) {
+                    if (seenOrderIds.size() == DUPLICATE_WINDOW) {
+                        IntHashSet emptied = previousOrderIds;
+                        emptied.clear();
+                        previousOrderIds = seenOrderIds;
+                        seenOrderIds = emptied;
+                    }
+                    int epochDay = file.isBlank(orderDate) ? TransactionChunk.NO_DATE
+                            : (int) file.getDate(orderDate).toEpochDay();
+                    chunk.add(id, epochDay, file.getInt(productId), file.getInt(quantity), file.getInt(customerId),
+                            file.getInt(timeId));
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not read transactions at offset " + file.recordOffset(), e);
+        }
+
+        if (!chunk.isEmpty()) {
+            rowsRead += chunk.size();
+            chunksRead++;
+            if (exhausted || chunksRead % PROGRESS_INTERVAL == 0) {
+                reportProgress();
+            }
+        }
+        return chunk;
+    }
+
+    private void reportProgress() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%d transactions read from %s (%.0f rows/s)%n",
+                rowsRead, path.getFileName(), seconds > 0 ? rowsRead / seconds : 0.0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
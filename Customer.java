@@ -0,0 +1,28 @@
+package com.meshjoin;
+
+class Customer 
+{
+    private final int customerId;
+    private final String customerName;
+    private final String gender;
+
+    public Customer(int customerId, String customerName, String gender) 
+    {
+        this.customerId = customerId;
+        this.customerName = customerName;
+        this.gender = gender;
+    }
+
+    public int getCustomerId() 
+    { 
+    	return customerId; 
+    }
+    public String getCustomerName() 
+    { 
+    	return customerName; 
+    }
+    public String getGender() 
+    { 
+    	return gender; 
+    }
+}
@@ -0,0 +1,133 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+//keeps the warehouse dimensions in step with the facts without a query per fact row.
+//the keys already in customer, product, store and supplier are read once at startup; new members
+//are only queued in memory and written as multi-row INSERT IGNORE statements by flush(),
+//which has to run before the fact batch that references them
+class DimensionManager {
+
+    //rows per multi-row INSERT statement
+    private static final int ROWS_PER_INSERT = 500;
+    //every row starts with its integer key
+    private static final Comparator<Object[]> KEY_ORDER = Comparator.comparingInt(row -> (Integer) row[0]);
+
+    private final Connection connWarehouse;
+
+    //keys that are in the warehouse or queued for it
+    private final IntHashSet customerKeys;
+    private final IntHashSet productKeys;
+    private final IntHashSet storeKeys;
+    private final IntHashSet supplierKeys;
+
+    private final List<Customer> pendingCustomers = new ArrayList<>();
+    private final List<Product> pendingProducts = new ArrayList<>();
+    private final List<Object[]> pendingStores = new ArrayList<>();
+    private final List<Object[]> pendingSuppliers = new ArrayList<>();
+
+    DimensionManager(Connection connWarehouse) throws SQLException {
+        this.connWarehouse = connWarehouse;
+        this.customerKeys = loadKeys("SELECT CUSTOMER_ID FROM customer");
+        this.productKeys = loadKeys("SELECT PRODUCT_ID FROM product");
+        this.storeKeys = loadKeys("SELECT STORE_ID FROM store");
+        this.supplierKeys = loadKeys("SELECT SUPPLIER_ID FROM supplier");
+    }
+
+    void addCustomer(Customer customer) {
+        if (customerKeys.add(customer.getCustomerId())) {
+            pendingCustomers.add(customer);
+        }
+    }
+
+    void addProduct(Product product) {
+        if (productKeys.add(product.getProductId())) {
+            pendingProducts.add(product);
+        }
+    }
+
+    void addStore(int storeId, String storeName) {
+        if (storeKeys.add(storeId)) {
+            pendingStores.add(new Object[] { storeId, storeName });
+        }
+    }
+
+    void addSupplier(int supplierId, String supplierName) {
+        if (supplierKeys.add(supplierId)) {
+            pendingSuppliers.add(new Object[] { supplierId, supplierName });
+        }
+    }
+
+    //writes every queued member and returns whether there were any; a no-op once the dimensions are warm
+    boolean flush() throws SQLException {
+        boolean wrote = !pendingCustomers.isEmpty() || !pendingProducts.isEmpty()
+                || !pendingStores.isEmpty() || !pendingSuppliers.isEmpty();
+        if (!pendingCustomers.isEmpty()) {
+            List<Object[]> rows = new ArrayList<>(pendingCustomers.size());
+            for (Customer customer : pendingCustomers) {
+                rows.add(new Object[] { customer.getCustomerId(), customer.getCustomerName(), customer.getGender() });
+            }
+            insertIgnore(connWarehouse, "customer (CUSTOMER_ID, CUSTOMER_NAME, GENDER)", 3, rows);
+            pendingCustomers.clear();
+        }
+        if (!pendingProducts.isEmpty()) {
+            List<Object[]> rows = new ArrayList<>(pendingProducts.size());
+            for (Product product : pendingProducts) {
+                rows.add(new Object[] { product.getProductId(), product.getProductName(), product.getProductPrice() });
+            }
+            insertIgnore(connWarehouse, "product (PRODUCT_ID, PRODUCT_NAME, PRODUCT_PRICE)", 3, rows);
+            pendingProducts.clear();
+        }
+        if (!pendingStores.isEmpty()) {
+            insertIgnore(connWarehouse, "store (STORE_ID, STORE_NAME)", 2, pendingStores);
+            pendingStores.clear();
+        }
+        if (!pendingSuppliers.isEmpty()) {
+            insertIgnore(connWarehouse, "supplier (SUPPLIER_ID, SUPPLIER_NAME)", 2, pendingSuppliers);
+            pendingSuppliers.clear();
+        }
+        return wrote;
+    }
+
+    private IntHashSet loadKeys(String keyQuery) throws SQLException {
+        IntHashSet keys = new IntHashSet();
+        try (Statement stmt = connWarehouse.createStatement();
+             ResultSet rs = stmt.executeQuery(keyQuery)) {
+            while (rs.next()) {
+                keys.add(rs.getInt(1));
+            }
+        }
+        return keys;
+    }
+
+    //INSERT IGNORE keeps the write idempotent if another load added the same member meanwhile.
+    //the rows are written in key order, so concurrent writers lock the same keys in the same
+    //order and cannot deadlock on each other
+    static void insertIgnore(Connection connWarehouse, String tableAndColumns, int columns, List<Object[]> rows) throws SQLException {
+        rows.sort(KEY_ORDER);
+        for (int from = 0; from < rows.size(); from += ROWS_PER_INSERT) {
+            int to = Math.min(rows.size(), from + ROWS_PER_INSERT);
+            StringBuilder sql = new StringBuilder("INSERT IGNORE INTO ").append(tableAndColumns).append(" VALUES ");
+            String tuple = "(" + "?, ".repeat(columns - 1) + "?)";
+            for (int i = from; i < to; i++) {
+                sql.append(i == from ? "" : ", ").append(tuple);
+            }
+            try (PreparedStatement pstmt = connWarehouse.prepareStatement(sql.toString())) {
+                int index = 1;
+                for (int i = from; i < to; i++) {
+                    for (Object value : rows.get(i)) {
+                        pstmt.setObject(index++, value);
+                    }
+                }
+                pstmt.executeUpdate();
+            }
+        }
+    }
+}
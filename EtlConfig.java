@@ -0,0 +1,445 @@
+package com.meshjoin;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+//run settings given as --name=value on the command line, as name=value in the properties file named by
+//--config, or as METRO_ETL_NAME environment variables. the command line overrides the file, which
+//overrides the environment
+class EtlConfig implements Cloneable {
+
+    //environment variables with this prefix set the option of the same name: METRO_ETL_BATCH_SIZE is --batch-size
+    static final String ENV_PREFIX = "METRO_ETL_";
+
+    //how the facts reach the warehouse
+    enum Sink {
+        //batched INSERT statements
+        INSERT,
+        //LOAD DATA LOCAL INFILE, for backfills
+        LOAD_DATA
+    }
+
+    //where the transactions and master data are read from
+    enum Source {
+        //the transactions, customers and products tables of the source database
+        DATABASE,
+        //transactions.csv, customers.csv and products.csv, read directly
+        CSV
+    }
+
+    //which transactions a load reads
+    enum Mode {
+        //all of them, starting the checkpoint over
+        FULL,
+        //only those after the checkpoint of the previous run with the same load name
+        INCREMENTAL
+    }
+
+    //how the summary tables of SalesCubes are kept
+    enum Cubes {
+        //the writers keep them up to date, a load with --mode=full rebuilds them from sales first
+        ON,
+        OFF,
+        //rebuilt from sales first whatever the mode, then kept up to date
+        REBUILD
+    }
+
+    //how a load is divided into runs of their own, which LoadScheduler runs side by side
+    enum Split {
+        //one run over all transactions
+        NONE,
+        //one run per store of the products table
+        STORE,
+        //one run per calendar month or quarter of ORDER_DATE
+        MONTH,
+        QUARTER
+    }
+
+    //join shards, each with its own warehouse writer and connection
+    private int parallelism = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    //fact rows per executeBatch
+    private int batchSize = 1000;
+    //fact batches per commit
+    private int commitInterval = 10;
+    private Sink sink = Sink.INSERT;
+    private Source source = Source.DATABASE;
+    //directory holding the CSV files when the source is CSV
+    private Path csvDirectory = Paths.get(".");
+    //extra full cycles over the master data an unmatched transaction gets before it is spilled
+    private int retryCycles = 1;
+    //unmatched transactions held for a retry at a time, the rest are spilled straight away
+    private int retryCapacity = 10_000;
+    //spill file for the transactions that stay unmatched
+    private Path unmatchedFile = Paths.get("unmatched-transactions.csv");
+    //seconds between two metrics log lines, 0 prints them only at the end
+    private int metricsInterval = 30;
+    //file the metrics snapshot is written to as JSON with every log line, none when null
+    private Path metricsFile;
+    private Mode mode = Mode.FULL;
+    //key of the load's rows in etl_checkpoint
+    private String loadName = "sales";
+    //transactions per source query or CSV read
+    private int segmentSize = 1000;
+    //heap the join window and the partition buffers are sized for, a quarter of the maximum heap by default
+    private long joinMemory = Runtime.getRuntime().maxMemory() / 4;
+    //fixed stream chunk and partition sizes in rows, 0 leaves them to JoinSizing
+    private int streamChunk;
+    private int customerPartition;
+    private int productPartition;
+    private Cubes cubes = Cubes.ON;
+    //host:port of the MySQL server with both databases
+    private String databaseHost = "localhost:3306";
+    //database names and login, whatever is not given is asked for on the console
+    private String sourceDatabase;
+    private String warehouseDatabase;
+    private String user;
+    private String password;
+    private Split split = Split.NONE;
+    //runs of a split load that load at the same time
+    private int concurrentRuns = 2;
+    //pooled connections of all runs together, 0 for as many as concurrentRuns runs need
+    private int maxConnections;
+    //slice of the source and position of a run of a split load, set by forRun
+    private LoadScope scope = LoadScope.ALL;
+    private int runIndex;
+
+    static EtlConfig fromArgs(String[] args) {
+        return of(parseArgs(args));
+    }
+
+    //the settings from the environment, the properties file and the command line, in that order of precedence
+    static EtlConfig load(String[] args, Map<String, String> env) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (Map.Entry<String, String> variable : env.entrySet()) {
+            if (variable.getKey().startsWith(ENV_PREFIX)) {
+                String name = variable.getKey().substring(ENV_PREFIX.length()).toLowerCase(Locale.ROOT).replace('_', '-');
+                options.put(name, variable.getValue());
+            }
+        }
+        Map<String, String> arguments = parseArgs(args);
+        String file = arguments.getOrDefault("config", options.get("config"));
+        if (file != null) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(Paths.get(file.trim()))) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not read the --config file " + file + ": " + e.getMessage());
+            }
+            for (String name : properties.stringPropertyNames()) {
+                options.put(name, properties.getProperty(name));
+            }
+        }
+        options.putAll(arguments);
+        options.remove("config");
+        return of(options);
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static EtlConfig of(Map<String, String> options) {
+        EtlConfig config = new EtlConfig();
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String name = option.getKey();
+            String value = option.getValue();
+            switch (name) {
+                case "parallelism" -> config.parallelism = positive(name, value);
+                case "batch-size" -> config.batchSize = positive(name, value);
+                case "commit-every" -> config.commitInterval = positive(name, value);
+                case "sink" -> config.sink = sink(value);
+                case "source" -> config.source = source(value);
+                case "csv-dir" -> config.csvDirectory = Paths.get(value.trim());
+                case "retry-cycles" -> config.retryCycles = nonNegative(name, value);
+                case "retry-capacity" -> config.retryCapacity = nonNegative(name, value);
+                case "unmatched-file" -> config.unmatchedFile = Paths.get(value.trim());
+                case "metrics-every" -> config.metricsInterval = nonNegative(name, value);
+                case "metrics-json" -> config.metricsFile = Paths.get(value.trim());
+                case "mode" -> config.mode = mode(value);
+                case "load-name" -> config.loadName = loadName(value);
+                case "segment-size" -> config.segmentSize = positive(name, value);
+                case "join-memory" -> config.joinMemory = bytes(name, value);
+                case "stream-chunk" -> config.streamChunk = nonNegative(name, value);
+                case "customer-partition" -> config.customerPartition = nonNegative(name, value);
+                case "product-partition" -> config.productPartition = nonNegative(name, value);
+                case "cubes" -> config.cubes = cubes(value);
+                case "db-host" -> config.databaseHost = value.trim();
+                case "source-db" -> config.sourceDatabase = value.trim();
+                case "warehouse-db" -> config.warehouseDatabase = value.trim();
+                case "user" -> config.user = value.trim();
+                case "password" -> config.password = value;
+                case "split" -> config.split = split(value);
+                case "concurrent-runs" -> config.concurrentRuns = positive(name, value);
+                case "max-connections" -> config.maxConnections = nonNegative(name, value);
+                default -> throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+        //the checkpoint is an ORDER_ID watermark, which needs the transactions in ORDER_ID order
+        if (config.mode == Mode.INCREMENTAL && config.source == Source.CSV) {
+            throw new IllegalArgumentException("--mode=incremental needs --source=database");
+        }
+        if (config.split != Split.NONE && config.source == Source.CSV) {
+            throw new IllegalArgumentException("--split needs --source=database");
+        }
+        if (config.maxConnections > 0 && config.maxConnections < config.getConnectionsPerRun()) {
+            throw new IllegalArgumentException("--max-connections must be at least " + config.getConnectionsPerRun()
+                    + ", the connections of one run with --parallelism=" + config.parallelism);
+        }
+        return config;
+    }
+
+    //the settings of one run of a split load: the run's own load name, so it keeps its own checkpoint,
+    //its own unmatched and metrics files, and its share of --join-memory among the concurrent runs
+    EtlConfig forRun(LoadScope scope, int runIndex, int concurrentRuns) {
+        EtlConfig run;
+        try {
+            run = (EtlConfig) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+        run.scope = scope;
+        run.runIndex = runIndex;
+        run.joinMemory = joinMemory / concurrentRuns;
+        if (scope.getName() != null) {
+            run.loadName = loadName(loadName + "-" + scope.getName());
+            run.unmatchedFile = withSuffix(unmatchedFile, scope.getName());
+            run.metricsFile = metricsFile == null ? null : withSuffix(metricsFile, scope.getName());
+        }
+        return run;
+    }
+
+    //unmatched-transactions.csv becomes unmatched-transactions-store-3.csv
+    private static Path withSuffix(Path file, String suffix) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String renamed = dot > 0 ? name.substring(0, dot) + "-" + suffix + name.substring(dot) : name + "-" + suffix;
+        return file.resolveSibling(renamed);
+    }
+
+    private static Split split(String value) {
+        return switch (value.trim()) {
+            case "none" -> Split.NONE;
+            case "store" -> Split.STORE;
+            case "month" -> Split.MONTH;
+            case "quarter" -> Split.QUARTER;
+            default -> throw new IllegalArgumentException("--split must be none, store, month or quarter");
+        };
+    }
+
+    private static Sink sink(String value) {
+        return switch (value.trim()) {
+            case "insert" -> Sink.INSERT;
+            case "load-data" -> Sink.LOAD_DATA;
+            default -> throw new IllegalArgumentException("--sink must be insert or load-data");
+        };
+    }
+
+    private static Source source(String value) {
+        return switch (value.trim()) {
+            case "database" -> Source.DATABASE;
+            case "csv" -> Source.CSV;
+            default -> throw new IllegalArgumentException("--source must be database or csv");
+        };
+    }
+
+    private static Mode mode(String value) {
+        return switch (value.trim()) {
+            case "full" -> Mode.FULL;
+            case "incremental" -> Mode.INCREMENTAL;
+            default -> throw new IllegalArgumentException("--mode must be full or incremental");
+        };
+    }
+
+    private static Cubes cubes(String value) {
+        return switch (value.trim()) {
+            case "on" -> Cubes.ON;
+            case "off" -> Cubes.OFF;
+            case "rebuild" -> Cubes.REBUILD;
+            default -> throw new IllegalArgumentException("--cubes must be on, off or rebuild");
+        };
+    }
+
+    private static String loadName(String value) {
+        String trimmed = value.trim();
+        if (trimmed.isEmpty() || trimmed.length() > 64) {
+            throw new IllegalArgumentException("--load-name must be 1 to 64 characters");
+        }
+        return trimmed;
+    }
+
+    //a size such as 512m, with an optional k, m or g suffix
+    private static long bytes(String name, String value) {
+        String trimmed = value.trim().toLowerCase(Locale.ROOT);
+        int shift = switch (trimmed.isEmpty() ? ' ' : trimmed.charAt(trimmed.length() - 1)) {
+            case 'k' -> 10;
+            case 'm' -> 20;
+            case 'g' -> 30;
+            default -> 0;
+        };
+        long parsed = Long.parseLong(shift == 0 ? trimmed : trimmed.substring(0, trimmed.length() - 1));
+        if (parsed < 1 || parsed > Long.MAX_VALUE >> shift) {
+            throw new IllegalArgumentException("--" + name + " must be a size such as 512m");
+        }
+        return parsed << shift;
+    }
+
+    private static int nonNegative(String name, String value) {
+        int parsed = Integer.parseInt(value.trim());
+        if (parsed < 0) {
+            throw new IllegalArgumentException("--" + name + " must not be negative");
+        }
+        return parsed;
+    }
+
+    private static int positive(String name, String value) {
+        int parsed = Integer.parseInt(value.trim());
+        if (parsed < 1) {
+            throw new IllegalArgumentException("--" + name + " must be at least 1");
+        }
+        return parsed;
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    int getCommitInterval() {
+        return commitInterval;
+    }
+
+    Sink getSink() {
+        return sink;
+    }
+
+    Source getSource() {
+        return source;
+    }
+
+    Path getCsvDirectory() {
+        return csvDirectory;
+    }
+
+    int getRetryCycles() {
+        return retryCycles;
+    }
+
+    int getRetryCapacity() {
+        return retryCapacity;
+    }
+
+    Path getUnmatchedFile() {
+        return unmatchedFile;
+    }
+
+    int getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    Path getMetricsFile() {
+        return metricsFile;
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    String getLoadName() {
+        return loadName;
+    }
+
+    int getSegmentSize() {
+        return segmentSize;
+    }
+
+    long getJoinMemory() {
+        return joinMemory;
+    }
+
+    int getStreamChunk() {
+        return streamChunk;
+    }
+
+    int getCustomerPartition() {
+        return customerPartition;
+    }
+
+    int getProductPartition() {
+        return productPartition;
+    }
+
+    //whether the writers keep the summary tables up to date
+    boolean isCubes() {
+        return cubes != Cubes.OFF;
+    }
+
+    //whether the summary tables are rebuilt from sales before the load
+    boolean isCubeRebuild() {
+        return cubes == Cubes.REBUILD || cubes == Cubes.ON && mode == Mode.FULL;
+    }
+
+    String getDatabaseHost() {
+        return databaseHost;
+    }
+
+    String getSourceDatabase() {
+        return sourceDatabase;
+    }
+
+    String getWarehouseDatabase() {
+        return warehouseDatabase;
+    }
+
+    String getUser() {
+        return user;
+    }
+
+    String getPassword() {
+        return password;
+    }
+
+    Split getSplit() {
+        return split;
+    }
+
+    int getConcurrentRuns() {
+        return concurrentRuns;
+    }
+
+    //connections one run holds: one per writer, plus the reader's and the master scan's with the database source
+    int getConnectionsPerRun() {
+        return parallelism + (source == Source.DATABASE ? 2 : 0);
+    }
+
+    //size of the connection pool shared by the runs
+    int getMaxConnections() {
+        return maxConnections > 0 ? maxConnections : concurrentRuns * getConnectionsPerRun();
+    }
+
+    LoadScope getScope() {
+        return scope;
+    }
+
+    //position of the run in a split load, 0 for a load that is not split
+    int getRunIndex() {
+        return runIndex;
+    }
+}
@@ -0,0 +1,312 @@
+package com.meshjoin;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+//counters and per-stage latency histograms of one load. the stages record one timing per segment,
+//partition, probe or batch and add their row counts in bulk, so the hot loops only pay for a
+//LongAdder or histogram increment every few hundred rows and the metrics can stay on in production.
+//while a load runs the same snapshot is served as a JMX MBean (com.meshjoin:type=EtlMetrics),
+//printed as a log line every --metrics-every seconds and, with --metrics-json, written as JSON.
+//the runs of a split load each have their own, told apart by a run key in the MBean name and log line
+class EtlMetrics implements DynamicMBean {
+
+    enum Stage {
+        SEGMENT_READ("segmentRead"),
+        PARTITION_LOAD("partitionLoad"),
+        PROBE("probe"),
+        DIMENSION_UPKEEP("dimensionUpkeep"),
+        BATCH_FLUSH("batchFlush");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final String OBJECT_NAME = "com.meshjoin:type=EtlMetrics";
+
+    private final LatencyHistogram[] stageLatencies = new LatencyHistogram[Stage.values().length];
+
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder rowsJoined = new LongAdder();
+    //unmatched transactions re-admitted for another cycle over the master data
+    private final LongAdder rowsRetried = new LongAdder();
+    //transactions that left the join without a customer or product for good
+    private final LongAdder rowsDropped = new LongAdder();
+    //master rows probed against the window index, by whether their key was in it
+    private final LongAdder bufferHits = new LongAdder();
+    private final LongAdder bufferMisses = new LongAdder();
+    private final LongAdder partitionLoads = new LongAdder();
+    //partitions loaded again after the first full cycle over their relation
+    private final LongAdder partitionReloads = new LongAdder();
+    private final LongAdder jdbcRoundTrips = new LongAdder();
+    //current shape of the join window, set by the join stage
+    private volatile int windowIterations;
+    private volatile int chunkRows;
+
+    private final long startNanos = System.nanoTime();
+    private ScheduledExecutorService reporter;
+    private Path jsonFile;
+    private ObjectName registeredName;
+    //load name of the run, null for a load that is not split
+    private final String runName;
+
+    EtlMetrics() {
+        this(null);
+    }
+
+    EtlMetrics(String runName) {
+        this.runName = runName;
+        for (int i = 0; i < stageLatencies.length; i++) {
+            stageLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    //records the time since startNanos, taken with System.nanoTime() when the stage began
+    void record(Stage stage, long startNanos) {
+        stageLatencies[stage.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    void addRowsRead(long rows) {
+        rowsRead.add(rows);
+    }
+
+    void addJoined(long rows) {
+        rowsJoined.add(rows);
+    }
+
+    void addRetried(long rows) {
+        rowsRetried.add(rows);
+    }
+
+    void addDropped(long rows) {
+        rowsDropped.add(rows);
+    }
+
+    void addBufferProbes(long hits, long misses) {
+        bufferHits.add(hits);
+        bufferMisses.add(misses);
+    }
+
+    void addPartitionLoad(boolean reload) {
+        partitionLoads.increment();
+        if (reload) {
+            partitionReloads.increment();
+        }
+    }
+
+    void addJdbcRoundTrip() {
+        jdbcRoundTrips.increment();
+    }
+
+    void setWindow(int windowIterations, int chunkRows) {
+        this.windowIterations = windowIterations;
+        this.chunkRows = chunkRows;
+    }
+
+    //tuples per second the source delivers while it is being read, 0 before the first segment
+    double getArrivalRate() {
+        long readNanos = stageLatencies[Stage.SEGMENT_READ.ordinal()].totalNanos();
+        return readNanos == 0 ? 0 : rowsRead.sum() * 1e9 / readNanos;
+    }
+
+    long getRowsJoined() {
+        return rowsJoined.sum();
+    }
+
+    long getRowsDropped() {
+        return rowsDropped.sum();
+    }
+
+    //registers the MBean and starts the periodic report; the interval is in seconds, 0 reports only at the end
+    void start(int intervalSeconds, Path jsonFile) {
+        this.jsonFile = jsonFile;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(runName == null ? OBJECT_NAME
+                    : OBJECT_NAME + ",run=" + ObjectName.quote(runName));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                registeredName = name;
+            }
+        } catch (JMException e) {
+            System.err.println("ETL metrics are not available over JMX: " + e);
+        }
+        if (intervalSeconds > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "etl-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    //stops the periodic report, prints the final one and unregisters the MBean
+    void stop() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        report();
+        if (registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (JMException e) {
+                System.err.println("Could not unregister the ETL metrics MBean: " + e);
+            }
+            registeredName = null;
+        }
+    }
+
+    private void report() {
+        Map<String, Object> snapshot = snapshot();
+        System.out.println(logLine(snapshot));
+        if (jsonFile != null) {
+            try {
+                //written next to the target and moved over it, so readers never see half a snapshot
+                Path temp = jsonFile.resolveSibling(jsonFile.getFileName() + ".tmp");
+                Files.write(temp, toJson(snapshot).getBytes(StandardCharsets.UTF_8));
+                Files.move(temp, jsonFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("Could not write the metrics snapshot to " + jsonFile + ": " + e);
+            }
+        }
+    }
+
+    //every metric by name, the JMX attributes and JSON fields are taken from here
+    Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("uptimeSeconds", (System.nanoTime() - startNanos) / 1_000_000_000L);
+        snapshot.put("rowsRead", rowsRead.sum());
+        snapshot.put("rowsJoined", rowsJoined.sum());
+        snapshot.put("rowsRetried", rowsRetried.sum());
+        snapshot.put("rowsDropped", rowsDropped.sum());
+        snapshot.put("bufferHits", bufferHits.sum());
+        snapshot.put("bufferMisses", bufferMisses.sum());
+        snapshot.put("partitionLoads", partitionLoads.sum());
+        snapshot.put("partitionReloads", partitionReloads.sum());
+        snapshot.put("jdbcRoundTrips", jdbcRoundTrips.sum());
+        snapshot.put("windowIterations", windowIterations);
+        snapshot.put("chunkRows", chunkRows);
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram latencies = stageLatencies[stage.ordinal()];
+            snapshot.put(stage.label + "Count", latencies.count());
+            snapshot.put(stage.label + "TotalMillis", millis(latencies.totalNanos()));
+            snapshot.put(stage.label + "P50Millis", millis(latencies.percentileNanos(0.50)));
+            snapshot.put(stage.label + "P99Millis", millis(latencies.percentileNanos(0.99)));
+            snapshot.put(stage.label + "MaxMillis", millis(latencies.maxNanos()));
+        }
+        return snapshot;
+    }
+
+    private String logLine(Map<String, Object> snapshot) {
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT,
+                "%smetrics: %d read, %d joined, %d retried, %d dropped, buffer %d hits/%d misses, %d partition loads (%d reloads), %d JDBC round trips, window %d x %d rows",
+                runName == null ? "" : runName + " ", snapshot.get("rowsRead"), snapshot.get("rowsJoined"), snapshot.get("rowsRetried"), snapshot.get("rowsDropped"),
+                snapshot.get("bufferHits"), snapshot.get("bufferMisses"), snapshot.get("partitionLoads"),
+                snapshot.get("partitionReloads"), snapshot.get("jdbcRoundTrips"), snapshot.get("windowIterations"),
+                snapshot.get("chunkRows")));
+        for (Stage stage : Stage.values()) {
+            line.append(String.format(Locale.ROOT, "; %s %d in %.0f ms (p50 %.2f, p99 %.2f, max %.2f ms)", stage.label,
+                    snapshot.get(stage.label + "Count"), snapshot.get(stage.label + "TotalMillis"),
+                    snapshot.get(stage.label + "P50Millis"), snapshot.get(stage.label + "P99Millis"),
+                    snapshot.get(stage.label + "MaxMillis")));
+        }
+        return line.toString();
+    }
+
+    static String toJson(Map<String, Object> snapshot) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Object> metric : snapshot.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(metric.getKey()).append("\":").append(metric.getValue());
+        }
+        return json.append("}\n").toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if (attribute.equals("snapshotJson")) {
+            return toJson(snapshot());
+        }
+        Object value = snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Object> snapshot = snapshot();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            if (attribute.equals("snapshotJson")) {
+                list.add(new Attribute(attribute, toJson(snapshot)));
+            } else if (snapshot.containsKey(attribute)) {
+                list.add(new Attribute(attribute, snapshot.get(attribute)));
+            }
+        }
+        return list;
+    }
+
+    //every attribute is read-only
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName), "EtlMetrics has no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Object> snapshot = snapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size() + 1];
+        int i = 0;
+        for (Map.Entry<String, Object> metric : snapshot.entrySet()) {
+            attributes[i++] = new MBeanAttributeInfo(metric.getKey(), metric.getValue().getClass().getName(),
+                    metric.getKey(), true, false, false);
+        }
+        attributes[i] = new MBeanAttributeInfo("snapshotJson", String.class.getName(),
+                "all metrics as one JSON object", true, false, false);
+        return new MBeanInfo(getClass().getName(), "MESHJOIN ETL metrics", attributes, null, null, null);
+    }
+}
@@ -0,0 +1,235 @@
+package com.meshjoin;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+//runs the load as stages on their own threads: the reader pulls segments from the source,
+//the join stage runs MESHJOIN over them and one writer per join shard loads the joined rows into
+//the warehouse. the stages are connected by bounded queues, so a slow stage applies backpressure
+//to the ones before it and throughput is set by the slowest stage instead of the sum of all of them
+class EtlPipeline {
+
+    //loads one batch of joined rows, i.e. everything a segment produced when it left the window.
+    //lowWatermark is the ORDER_ID up to which the join is done, see MeshJoinEngine.JoinSink
+    interface BatchWriter {
+        void write(List<JoinedRow> batch, int lowWatermark) throws SQLException;
+
+        //called once after the last batch
+        void finish() throws SQLException;
+    }
+
+    //a transaction with the master data it joined with
+    static final class JoinedRow {
+        final Transaction transaction;
+        final Customer customer;
+        final Product product;
+
+        JoinedRow(Transaction transaction, Customer customer, Product product) {
+            this.transaction = transaction;
+            this.customer = customer;
+            this.product = product;
+        }
+    }
+
+    //the rows of one expired chunk for one writer
+    private static final class JoinedBatch {
+        final List<JoinedRow> rows;
+        final int lowWatermark;
+
+        JoinedBatch(List<JoinedRow> rows, int lowWatermark) {
+            this.rows = rows;
+            this.lowWatermark = lowWatermark;
+        }
+    }
+
+    //segments buffered between two stages
+    private static final int QUEUE_CAPACITY = 8;
+
+    //how often a blocked stage checks whether the pipeline was aborted; JDBC drivers may swallow
+    //the interrupt, so a stage cannot rely on it alone to stop
+    private static final long ABORT_CHECK_MILLIS = 100;
+
+    //poison pills, compared by identity
+    private static final TransactionChunk END_OF_SEGMENTS = new TransactionChunk(0);
+    private static final JoinedBatch END_OF_BATCHES = new JoinedBatch(List.of(), Integer.MIN_VALUE);
+
+    private final BlockingQueue<TransactionChunk> segmentQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    //one queue per writer, fed by the join shard of the same index
+    private final List<BlockingQueue<JoinedBatch>> batchQueues = new ArrayList<>();
+
+    private final MeshJoinEngine.TransactionStream source;
+    private final MeshJoinEngine.Factory engineFactory;
+    private final List<BatchWriter> writers;
+    private final EtlMetrics metrics;
+
+    private volatile boolean aborted;
+
+    EtlPipeline(MeshJoinEngine.TransactionStream source, MeshJoinEngine.Factory engineFactory, List<BatchWriter> writers,
+            EtlMetrics metrics) {
+        this.source = source;
+        this.engineFactory = engineFactory;
+        this.writers = writers;
+        this.metrics = metrics;
+        for (int i = 0; i < writers.size(); i++) {
+            batchQueues.add(new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+        }
+    }
+
+    //runs until the writer has loaded the last batch. if a stage fails the others are interrupted
+    //and the first failure is rethrown
+    void run() throws SQLException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2 + writers.size());
+        CompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            futures.add(stages.submit(stage("etl-reader", this::read)));
+            futures.add(stages.submit(stage("etl-join", this::join)));
+            for (int i = 0; i < writers.size(); i++) {
+                int writer = i;
+                futures.add(stages.submit(stage("etl-writer-" + writer, () -> write(writer))));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    stages.take().get();
+                } catch (ExecutionException e) {
+                    aborted = true;
+                    for (Future<Void> future : futures) {
+                        future.cancel(true);
+                    }
+                    throw unwrap(e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void read() throws SQLException, InterruptedException {
+        TransactionChunk segment = readSegment();
+        while (!segment.isEmpty()) {
+            put(segmentQueue, segment);
+            segment = readSegment();
+        }
+        put(segmentQueue, END_OF_SEGMENTS);
+    }
+
+    private TransactionChunk readSegment() throws SQLException, InterruptedException {
+        long start = System.nanoTime();
+        TransactionChunk segment = source.nextChunk();
+        metrics.record(EtlMetrics.Stage.SEGMENT_READ, start);
+        metrics.addRowsRead(segment.size());
+        return segment;
+    }
+
+    private void join() throws SQLException, InterruptedException {
+        List<MeshJoinEngine.JoinSink> sinks = new ArrayList<>();
+        for (BlockingQueue<JoinedBatch> batchQueue : batchQueues) {
+            sinks.add(new MeshJoinEngine.JoinSink() {
+                private List<JoinedRow> batch = new ArrayList<>();
+                private int lowWatermark = Integer.MIN_VALUE;
+
+                @Override
+                public void onMatch(Transaction transaction, Customer customer, Product product) {
+                    batch.add(new JoinedRow(transaction, customer, product));
+                }
+
+                @Override
+                public void onChunkExpired(int lowWatermark) throws InterruptedException {
+                    //an empty batch still goes to the writer when it moves the watermark, so a shard
+                    //without matches keeps its checkpoint up with the others
+                    if (!batch.isEmpty() || lowWatermark != this.lowWatermark) {
+                        put(batchQueue, new JoinedBatch(batch, lowWatermark));
+                        batch = new ArrayList<>();
+                        this.lowWatermark = lowWatermark;
+                    }
+                }
+            });
+        }
+        try (MeshJoinEngine engine = engineFactory.create(sinks)) {
+            engine.run(new MeshJoinEngine.TransactionStream() {
+                @Override
+                public TransactionChunk nextChunk() throws InterruptedException {
+                    TransactionChunk segment = take(segmentQueue);
+                    return segment == END_OF_SEGMENTS ? TransactionChunk.EMPTY : segment;
+                }
+
+                //the engine only gathers the segments the reader is ahead by, it never waits for a second one
+                @Override
+                public boolean hasChunkReady() {
+                    return !segmentQueue.isEmpty();
+                }
+            });
+        }
+        for (BlockingQueue<JoinedBatch> batchQueue : batchQueues) {
+            put(batchQueue, END_OF_BATCHES);
+        }
+    }
+
+    private void write(int writer) throws SQLException, InterruptedException {
+        BlockingQueue<JoinedBatch> batchQueue = batchQueues.get(writer);
+        JoinedBatch batch = take(batchQueue);
+        while (batch != END_OF_BATCHES) {
+            writers.get(writer).write(batch.rows, batch.lowWatermark);
+            batch = take(batchQueue);
+        }
+        writers.get(writer).finish();
+    }
+
+    private <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+        while (!queue.offer(item, ABORT_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkAborted();
+        }
+    }
+
+    private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+        T item = queue.poll(ABORT_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        while (item == null) {
+            checkAborted();
+            item = queue.poll(ABORT_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return item;
+    }
+
+    private void checkAborted() throws InterruptedException {
+        if (aborted) {
+            throw new InterruptedException("ETL pipeline aborted");
+        }
+    }
+
+    private interface StageBody {
+        void run() throws SQLException, InterruptedException;
+    }
+
+    private static Callable<Void> stage(String name, StageBody body) {
+        return () -> {
+            Thread.currentThread().setName(name);
+            body.run();
+            return null;
+        };
+    }
+
+    static SQLException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof SQLException) {
+            return (SQLException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new SQLException("ETL stage failed", cause);
+    }
+}
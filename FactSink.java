@@ -0,0 +1,34 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+
+//destination of the sales facts of one warehouse writer
+interface FactSink extends AutoCloseable {
+
+    void add(Transaction transaction, double totalSales, int storeId, int supplierId) throws SQLException;
+
+    //every fact up to lowWatermark has been added; the checkpoint follows once they are committed
+    void mark(int lowWatermark, Date latestOrderDate) throws SQLException;
+
+    //commits everything executed so far, including statements other components ran on this connection
+    void commit() throws SQLException;
+
+    //writes and commits whatever is still pending, at the end of the load
+    void finish() throws SQLException;
+
+    @Override
+    void close() throws SQLException;
+
+    //the sink takes over the checkpoint and the summary stripe and closes them with itself
+    static FactSink open(Connection connWarehouse, EtlConfig config, LoadCheckpoint checkpoint, SalesCubes.Stripe cubes)
+            throws SQLException {
+        return switch (config.getSink()) {
+            case INSERT -> new FactWriter(connWarehouse, config.getBatchSize(), config.getCommitInterval(), checkpoint,
+                    cubes);
+            case LOAD_DATA -> new LoadDataFactWriter(connWarehouse, config.getBatchSize(), config.getCommitInterval(),
+                    checkpoint, cubes);
+        };
+    }
+}
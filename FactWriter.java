@@ -0,0 +1,114 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+//batched insert of sales facts on one long-lived prepared statement. the connection runs in explicit
+//transactions: the batch is executed every batchSize rows and committed every commitInterval batches,
+//independent of how the join segments the stream. with rewriteBatchedStatements on the connection
+//Connector/J sends each batch as multi-row INSERTs instead of one statement per row. a fact that is
+//already there is overwritten, so replaying transactions after a resumed load is harmless
+class FactWriter implements FactSink {
+
+    private static final String INSERT_SALES = """
+        INSERT INTO sales (ORDER_ID, ORDER_DATE, QUANTITY, CUSTOMER_ID, PRODUCT_ID, STORE_ID, SUPPLIER_ID, TOTAL_SALES, TIME_ID)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE ORDER_DATE = VALUES(ORDER_DATE), QUANTITY = VALUES(QUANTITY), CUSTOMER_ID = VALUES(CUSTOMER_ID),
+          PRODUCT_ID = VALUES(PRODUCT_ID), STORE_ID = VALUES(STORE_ID), SUPPLIER_ID = VALUES(SUPPLIER_ID),
+          TOTAL_SALES = VALUES(TOTAL_SALES), TIME_ID = VALUES(TIME_ID)
+        """;
+
+    private final Connection connWarehouse;
+    private final PreparedStatement salesInsertStatement;
+    private final int batchSize;
+    private final int commitInterval;
+    private final LoadCheckpoint checkpoint;
+    private final SalesCubes.Stripe cubes;
+
+    private int pendingRows;
+    private int batchesSinceCommit;
+
+    FactWriter(Connection connWarehouse, int batchSize, int commitInterval, LoadCheckpoint checkpoint,
+            SalesCubes.Stripe cubes) throws SQLException {
+        this.connWarehouse = connWarehouse;
+        this.checkpoint = checkpoint;
+        this.cubes = cubes;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+        connWarehouse.setAutoCommit(false);
+        this.salesInsertStatement = connWarehouse.prepareStatement(INSERT_SALES);
+    }
+
+    @Override
+    public void add(Transaction transaction, double totalSales, int storeId, int supplierId) throws SQLException {
+        cubes.add(transaction, totalSales, storeId, supplierId);
+        salesInsertStatement.setInt(1, transaction.getOrderId());
+        salesInsertStatement.setDate(2, transaction.getOrderDate());
+        salesInsertStatement.setInt(3, transaction.getQuantity());
+        salesInsertStatement.setInt(4, transaction.getCustomerId());
+        salesInsertStatement.setInt(5, transaction.getProductId());
+        salesInsertStatement.setInt(6, storeId);
+        salesInsertStatement.setInt(7, supplierId);
+        salesInsertStatement.setDouble(8, totalSales);
+        salesInsertStatement.setInt(9, transaction.getTimeId());
+        salesInsertStatement.addBatch();
+        if (++pendingRows >= batchSize) {
+            executeBatch();
+        }
+    }
+
+    @Override
+    public void mark(int lowWatermark, Date latestOrderDate) {
+        checkpoint.mark(lowWatermark, latestOrderDate);
+        if (pendingRows == 0) {
+            checkpoint.executed();
+        }
+    }
+
+    //the checkpoint row and the summary rows go into the same transaction as the facts they cover
+    @Override
+    public void commit() throws SQLException {
+        checkpoint.beforeCommit();
+        cubes.beforeCommit();
+        connWarehouse.commit();
+        batchesSinceCommit = 0;
+    }
+
+    @Override
+    public void finish() throws SQLException {
+        if (pendingRows > 0) {
+            cubes.beforeExecute();
+            salesInsertStatement.executeBatch();
+            pendingRows = 0;
+            checkpoint.executed();
+            cubes.executed();
+        }
+        commit();
+    }
+
+    private void executeBatch() throws SQLException {
+        cubes.beforeExecute();
+        salesInsertStatement.executeBatch();
+        pendingRows = 0;
+        checkpoint.executed();
+        cubes.executed();
+        if (++batchesSinceCommit >= commitInterval) {
+            commit();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            salesInsertStatement.close();
+        } finally {
+            try {
+                checkpoint.close();
+            } finally {
+                cubes.close();
+            }
+        }
+    }
+}
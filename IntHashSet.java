@@ -0,0 +1,100 @@
+package com.meshjoin;
+
+import java.util.Arrays;
+
+//open-addressing set of primitive ints with linear probing, so key lookups on the load path
+//never box an Integer or allocate a map entry
+class IntHashSet {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int mask;
+    private int size;
+    //EMPTY marks free slots, so that one value is tracked on the side
+    private boolean containsEmptyKey;
+
+    IntHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    IntHashSet() {
+        this(16);
+    }
+
+    boolean contains(int key) {
+        if (key == EMPTY) {
+            return containsEmptyKey;
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    //returns true when the key was not in the set before
+    boolean add(int key) {
+        if (key == EMPTY) {
+            if (containsEmptyKey) {
+                return false;
+            }
+            containsEmptyKey = true;
+            size++;
+            return true;
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        size++;
+        if (size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    //empties the set and keeps its capacity
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        containsEmptyKey = false;
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = keys;
+        allocate(capacity);
+        for (int key : old) {
+            if (key != EMPTY) {
+                int slot = slot(key);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+//master data read from the customers and products tables of the source database
+class JdbcMasterDataSource implements MasterDataSource {
+
+    private final Connection connSource;
+    //the products of a store run are only those of its store
+    private final LoadScope scope;
+
+    JdbcMasterDataSource(Connection connSource) {
+        this(connSource, LoadScope.ALL);
+    }
+
+    JdbcMasterDataSource(Connection connSource, LoadScope scope) {
+        this.connSource = connSource;
+        this.scope = scope;
+    }
+
+    @Override
+    public int customerCount() throws SQLException {
+        return getRowCount("customers");
+    }
+
+    @Override
+    public int productCount() throws SQLException {
+        try (PreparedStatement pstmt = connSource.prepareStatement("SELECT COUNT(*) FROM products" + scope.productFilter())) {
+            scope.bindProductFilter(pstmt, 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        return 0;
+    }
+
+    private int getRowCount(String tableName) throws SQLException {
+        String countQuery = "SELECT COUNT(*) FROM " + tableName;
+        try (Statement stmt = connSource.createStatement();
+             ResultSet rs = stmt.executeQuery(countQuery)) {
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+        }
+        return 0;
+    }
+
+    //customers are ordered on the key so the cyclic scan visits every row exactly once
+    @Override
+    public List<Customer> loadCustomers(int offset, int limit) throws SQLException {
+        List<Customer> partition = new ArrayList<>(limit);
+        String customerQuery = "SELECT * FROM customers ORDER BY CUSTOMER_ID LIMIT ?, ?";
+        try (PreparedStatement pstmt = connSource.prepareStatement(customerQuery)) {
+            pstmt.setInt(1, offset);
+            pstmt.setInt(2, limit);
+            try (ResultSet rsCustomers = pstmt.executeQuery()) {
+                while (rsCustomers.next()) {
+                    int customerId = rsCustomers.getInt("CUSTOMER_ID");
+                    String customerName = rsCustomers.getString("CUSTOMER_NAME");
+                    String gender = rsCustomers.getString("GENDER");
+                    partition.add(new Customer(customerId, customerName, gender));
+                }
+            }
+        }
+        return partition;
+    }
+
+    //products are read with their store and supplier columns, ordered on the key as well. a product
+    //without a STORE_ID is left out of the partition, so its transactions end in the unmatched file
+    //instead of being loaded with a store 0 that is not in the store dimension
+    @Override
+    public List<Product> loadProducts(int offset, int limit) throws SQLException {
+        List<Product> partition = new ArrayList<>(limit);
+        String productQuery = "SELECT * FROM products" + scope.productFilter() + " ORDER BY PRODUCT_ID LIMIT ?, ?";
+        try (PreparedStatement pstmt = connSource.prepareStatement(productQuery)) {
+            int index = scope.bindProductFilter(pstmt, 1);
+            pstmt.setInt(index, offset);
+            pstmt.setInt(index + 1, limit);
+            try (ResultSet rsProducts = pstmt.executeQuery()) {
+                while (rsProducts.next()) {
+                    int productId = rsProducts.getInt("PRODUCT_ID");
+                    String productName = rsProducts.getString("PRODUCT_NAME");
+                    double productPrice = rsProducts.getDouble("PRODUCT_PRICE");
+                    int storeId = rsProducts.getInt("STORE_ID");
+                    if (rsProducts.wasNull()) {
+                        continue;
+                    }
+                    String storeName = rsProducts.getString("STORE_NAME");
+                    int supplierId = rsProducts.getInt("SUPPLIER_ID");
+                    String supplierName = rsProducts.getString("SUPPLIER_NAME");
+                    partition.add(new Product(productId, productName, productPrice,
+                            storeId, storeName, supplierId, supplierName));
+                }
+            }
+        }
+        return partition;
+    }
+}
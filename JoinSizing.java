@@ -0,0 +1,186 @@
+package com.meshjoin;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+
+//sizes of the MESHJOIN window, planned from the --join-memory budget. the window holds
+//windowIterations stream chunks and every iteration loads one customer and one product partition,
+//so the budget is split between window tuples and the two partition buffers. what decides the
+//throughput is how many stream tuples every loaded master row is probed against, i.e. the window
+//tuples per master row, so the plan gives the window as much of the budget as it can while keeping
+//the partitions large enough to amortise their queries.
+//the partition sizes stay fixed for the whole load, as a chunk in the window relies on them to see
+//every master row once; only the number of partitions grows when rows are appended to the master
+//data, see MeshJoinEngine. the stream chunk is adapted after every iteration instead: from the measured cost
+//of a master scan and of a tuple it takes the smallest chunk whose service rate stays ahead of the
+//rate the stream delivers, capped by what the budget leaves for the window
+final class JoinSizing {
+
+    //bytes per window tuple: the TupleBuffer columns at no less than half occupancy plus its share of
+    //the four index tables, which keep at most one entry per tuple at no less than half load
+    static final int WINDOW_TUPLE_BYTES = 2 * (9 * 4 + 2 * 8) + 4 * 2 * 2 * 4;
+    //smaller partitions would spend more on their query than on their rows
+    static final int MIN_PARTITION_ROWS = 200;
+    static final int MIN_CHUNK_ROWS = 100;
+    //bigger chunks only add latency once the master scan is amortised, and the probe's scattered writes
+    //into the window columns fall out of the CPU caches
+    static final int MAX_CHUNK_ROWS = 10_000;
+    //the plan keeps the partition buffers to this share of the budget when the master data is bigger
+    private static final double BUFFER_SHARE = 0.1;
+    //master rows whose size is measured for the plan
+    private static final int SAMPLE_ROWS = 100;
+    //service rate the chunk is sized for, relative to the arrival rate
+    private static final double HEADROOM = 1.5;
+    //weight of the latest iteration in the smoothed costs
+    private static final double SMOOTHING = 0.2;
+
+    private final long budgetBytes;
+    private final int customerPartitionRows;
+    private final int productPartitionRows;
+    private final int windowIterations;
+    private final int maxChunkRows;
+    //fixed by --stream-chunk, else adapted
+    private final boolean adaptive;
+    private int chunkRows;
+
+    //smoothed nanoseconds of one master scan (partition load and probe) and of one tuple (admit and expire)
+    private double scanNanos = -1;
+    private double tupleNanos = -1;
+
+    private JoinSizing(long budgetBytes, int customerPartitionRows, int productPartitionRows, int windowIterations,
+            int maxChunkRows, boolean adaptive, int chunkRows) {
+        this.budgetBytes = budgetBytes;
+        this.customerPartitionRows = customerPartitionRows;
+        this.productPartitionRows = productPartitionRows;
+        this.windowIterations = windowIterations;
+        this.maxChunkRows = maxChunkRows;
+        this.adaptive = adaptive;
+        this.chunkRows = chunkRows;
+    }
+
+    //plans the window from the master row counts and the size of a sample of their rows.
+    //partition sizes and the stream chunk given in the config are kept as they are
+    static JoinSizing plan(MasterDataSource masterData, EtlConfig config) throws SQLException {
+        int customers = masterData.customerCount();
+        int products = masterData.productCount();
+        long customerBytes = customerBytes(masterData.loadCustomers(0, SAMPLE_ROWS));
+        long productBytes = productBytes(masterData.loadProducts(0, SAMPLE_ROWS));
+        long budget = config.getJoinMemory();
+
+        int customerPartition = config.getCustomerPartition();
+        int productPartition = config.getProductPartition();
+        if (customerPartition == 0 || productPartition == 0) {
+            //the partitions of both relations are cut into the same number of iterations, the fewest
+            //that keep their buffers within BUFFER_SHARE, but never below MIN_PARTITION_ROWS
+            long masterBytes = customers * customerBytes + products * productBytes;
+            int maxIterations = Math.max(1, ceilDiv(Math.max(customers, products), MIN_PARTITION_ROWS));
+            long iterations = Math.max(1, (long) Math.ceil(masterBytes / (budget * BUFFER_SHARE)));
+            int planned = (int) Math.min(iterations, maxIterations);
+            if (customerPartition == 0) {
+                customerPartition = partitionRows(customers, planned);
+            }
+            if (productPartition == 0) {
+                productPartition = partitionRows(products, planned);
+            }
+        }
+        int windowIterations = Math.max(ceilDiv(Math.max(1, customers), customerPartition),
+                ceilDiv(Math.max(1, products), productPartition));
+
+        long bufferBytes = customerPartition * customerBytes + productPartition * productBytes;
+        long windowRows = (budget - bufferBytes) / WINDOW_TUPLE_BYTES / windowIterations;
+        int maxChunkRows = (int) Math.max(MIN_CHUNK_ROWS, Math.min(MAX_CHUNK_ROWS, windowRows));
+        if (windowRows < MIN_CHUNK_ROWS) {
+            System.err.printf("--join-memory=%s is too small for this master data, the window will need about %d MB%n",
+                    megabytes(budget), (bufferBytes + (long) MIN_CHUNK_ROWS * windowIterations * WINDOW_TUPLE_BYTES) >> 20);
+        }
+
+        int streamChunk = config.getStreamChunk();
+        if (streamChunk > 0) {
+            return new JoinSizing(budget, customerPartition, productPartition, windowIterations, streamChunk, false,
+                    streamChunk);
+        }
+        //the first chunk has at least as many tuples as an iteration loads master rows, so the scan
+        //starts out amortised before any cost has been measured
+        int firstChunk = Math.max(config.getSegmentSize(), customerPartition + productPartition);
+        return new JoinSizing(budget, customerPartition, productPartition, windowIterations, maxChunkRows, true,
+                Math.min(maxChunkRows, Math.max(MIN_CHUNK_ROWS, firstChunk)));
+    }
+
+    int getCustomerPartitionRows() {
+        return customerPartitionRows;
+    }
+
+    int getProductPartitionRows() {
+        return productPartitionRows;
+    }
+
+    //stream tuples the engine admits per iteration; segments are not split, so the last one may overshoot it
+    int getChunkRows() {
+        return chunkRows;
+    }
+
+    //records one iteration and resizes the chunk for the next. with a scan cost F and a tuple cost c,
+    //a chunk of k tuples is served at k / (F + c k) tuples per second, which keeps up with an arrival
+    //rate a once k >= a F / (1 - a c). arrivalRate is in tuples per second, 0 when the stream does not
+    //report it, in which case it is taken to deliver as fast as the join can take it
+    void recordIteration(long scanNanos, long tupleNanos, int tuples, double arrivalRate) {
+        if (!adaptive || tuples == 0) {
+            return;
+        }
+        double perTuple = (double) tupleNanos / tuples;
+        this.scanNanos = this.scanNanos < 0 ? scanNanos : this.scanNanos + SMOOTHING * (scanNanos - this.scanNanos);
+        this.tupleNanos = this.tupleNanos < 0 ? perTuple : this.tupleNanos + SMOOTHING * (perTuple - this.tupleNanos);
+        double arrivalsPerNano = arrivalRate * HEADROOM / 1e9;
+        double target = arrivalRate <= 0 || arrivalsPerNano * this.tupleNanos >= 1
+                ? maxChunkRows
+                : arrivalsPerNano * this.scanNanos / (1 - arrivalsPerNano * this.tupleNanos);
+        //moves at most a factor of two per iteration, so one slow scan does not swing the window
+        int next = (int) Math.max(chunkRows / 2, Math.min((long) chunkRows * 2, (long) Math.ceil(target)));
+        chunkRows = Math.max(MIN_CHUNK_ROWS, Math.min(maxChunkRows, next));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "join window of %d iteration(s): customer partitions of %d rows, product partitions of %d rows, "
+                        + "stream chunks of %s rows (join memory %s)",
+                windowIterations, customerPartitionRows, productPartitionRows,
+                adaptive ? chunkRows + " to " + maxChunkRows : String.valueOf(chunkRows), megabytes(budgetBytes));
+    }
+
+    private static int partitionRows(int rows, int iterations) {
+        return Math.max(Math.min(Math.max(1, rows), MIN_PARTITION_ROWS), ceilDiv(rows, iterations));
+    }
+
+    private static int ceilDiv(int rows, int parts) {
+        return (int) (((long) rows + parts - 1) / parts);
+    }
+
+    private static String megabytes(long bytes) {
+        return (bytes >> 20) + "m";
+    }
+
+    //heap estimate of the sampled rows: the object with its int, double and reference fields, its
+    //strings as compact Latin-1 and the list slot pointing at it
+    private static long customerBytes(List<Customer> sample) {
+        long bytes = 0;
+        for (Customer customer : sample) {
+            bytes += 24 + 4 + stringBytes(customer.getCustomerName()) + stringBytes(customer.getGender());
+        }
+        return sample.isEmpty() ? 64 : (bytes + sample.size() - 1) / sample.size();
+    }
+
+    private static long productBytes(List<Product> sample) {
+        long bytes = 0;
+        for (Product product : sample) {
+            bytes += 48 + 4 + stringBytes(product.getProductName()) + stringBytes(product.getStoreName())
+                    + stringBytes(product.getSupplierName());
+        }
+        return sample.isEmpty() ? 128 : (bytes + sample.size() - 1) / sample.size();
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 24 + ((16 + value.length() + 7) & ~7);
+    }
+}
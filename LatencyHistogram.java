@@ -0,0 +1,77 @@
+package com.meshjoin;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//lock-free latency histogram in the HdrHistogram layout: values below 64 ns get a bucket each,
+//every power of two above that is split into 32 linear sub-buckets, so a recorded value and the
+//percentile reported for it differ by at most 1/32. recording is one array increment and never
+//allocates; values above MAX_VALUE_NANOS are clamped into the last bucket
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    //about 18 minutes
+    private static final long MAX_VALUE_NANOS = 1L << 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE_NANOS) + 1);
+    //count, sum and max are kept next to the buckets so the summary needs no scan
+    private final AtomicLongArray summary = new AtomicLongArray(3);
+
+    void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE_NANOS));
+        counts.incrementAndGet(index(value));
+        summary.incrementAndGet(0);
+        summary.addAndGet(1, value);
+        long max = summary.get(2);
+        while (value > max && !summary.compareAndSet(2, max, value)) {
+            max = summary.get(2);
+        }
+    }
+
+    long count() {
+        return summary.get(0);
+    }
+
+    long totalNanos() {
+        return summary.get(1);
+    }
+
+    long maxNanos() {
+        return summary.get(2);
+    }
+
+    //smallest recorded value such that the given fraction of all values is at or below it,
+    //reported as the upper end of its bucket
+    long percentileNanos(double fraction) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxNanos());
+            }
+        }
+        return maxNanos();
+    }
+
+    private static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    private static long upperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,159 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+//progress of a load in the etl_checkpoint table, one row per warehouse writer. a writer's
+//LAST_ORDER_ID is a low watermark: every transaction up to it has left the join and every fact up to
+//it that went to this writer is committed. the row is written in the same transaction as the facts,
+//so it never runs ahead of them, and a load resumes after the smallest watermark of its writers.
+//this relies on the transactions arriving in ORDER_ID order, as the database source reads them
+class LoadCheckpoint {
+
+    private static final String CREATE_TABLE = """
+        CREATE TABLE IF NOT EXISTS etl_checkpoint (
+          LOAD_NAME VARCHAR(64),
+          WRITER INT,
+          LAST_ORDER_ID INT,
+          LAST_ORDER_DATE DATE,
+          UPDATED_AT TIMESTAMP,
+          PRIMARY KEY (LOAD_NAME, WRITER))
+        """;
+
+    private static final String UPSERT = """
+        INSERT INTO etl_checkpoint (LOAD_NAME, WRITER, LAST_ORDER_ID, LAST_ORDER_DATE, UPDATED_AT)
+        VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)
+        ON DUPLICATE KEY UPDATE LAST_ORDER_ID = VALUES(LAST_ORDER_ID), LAST_ORDER_DATE = VALUES(LAST_ORDER_DATE),
+          UPDATED_AT = VALUES(UPDATED_AT)
+        """;
+
+    //null when the load is not checkpointed
+    private final PreparedStatement upsertStatement;
+
+    //watermark of the facts added so far, of those executed on the connection, and of the stored row
+    private int markedOrderId;
+    private Date markedOrderDate;
+    private int executedOrderId;
+    private Date executedOrderDate;
+    private int writtenOrderId;
+
+    private LoadCheckpoint(PreparedStatement upsertStatement, int startOrderId) {
+        this.upsertStatement = upsertStatement;
+        this.markedOrderId = startOrderId;
+        this.executedOrderId = startOrderId;
+        this.writtenOrderId = startOrderId;
+    }
+
+    //the checkpoint of one writer, continuing from startOrderId
+    static LoadCheckpoint open(Connection connWarehouse, String loadName, int writer, int startOrderId) throws SQLException {
+        PreparedStatement upsertStatement = connWarehouse.prepareStatement(UPSERT);
+        upsertStatement.setString(1, loadName);
+        upsertStatement.setInt(2, writer);
+        return new LoadCheckpoint(upsertStatement, startOrderId);
+    }
+
+    //for loads that are not checkpointed, such as CSV sources that are not in ORDER_ID order
+    static LoadCheckpoint disabled() {
+        return new LoadCheckpoint(null, Integer.MIN_VALUE);
+    }
+
+    //sets up the checkpoint rows of a database load and returns the ORDER_ID it starts after:
+    //Integer.MIN_VALUE for a full load, the previous run's watermark for an incremental one
+    static int begin(Connection connWarehouse, EtlConfig config) throws SQLException {
+        try (Statement stmt = connWarehouse.createStatement()) {
+            stmt.execute(CREATE_TABLE);
+        }
+        Integer resumeAfter = null;
+        if (config.getMode() == EtlConfig.Mode.INCREMENTAL) {
+            resumeAfter = resumeAfter(connWarehouse, config.getLoadName());
+        }
+        reset(connWarehouse, config.getLoadName(), config.getParallelism(), resumeAfter);
+        return resumeAfter == null ? Integer.MIN_VALUE : resumeAfter;
+    }
+
+    //ORDER_ID after which the load resumes: the smallest watermark of its writers, or null when the load
+    //has no complete checkpoint and has to start from the beginning
+    private static Integer resumeAfter(Connection connWarehouse, String loadName) throws SQLException {
+        Integer resumeAfter = null;
+        try (PreparedStatement pstmt = connWarehouse.prepareStatement(
+                "SELECT LAST_ORDER_ID FROM etl_checkpoint WHERE LOAD_NAME = ?")) {
+            pstmt.setString(1, loadName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int lastOrderId = rs.getInt(1);
+                    if (rs.wasNull()) {
+                        return null;
+                    }
+                    resumeAfter = resumeAfter == null ? lastOrderId : Math.min(resumeAfter, lastOrderId);
+                }
+            }
+        }
+        return resumeAfter;
+    }
+
+    //replaces the rows of the load by one per writer at the starting point, null for a full load,
+    //so the watermarks of a previous run with other writers cannot outlive it
+    private static void reset(Connection connWarehouse, String loadName, int writers, Integer startOrderId) throws SQLException {
+        boolean autoCommit = connWarehouse.getAutoCommit();
+        connWarehouse.setAutoCommit(false);
+        try (PreparedStatement delete = connWarehouse.prepareStatement("DELETE FROM etl_checkpoint WHERE LOAD_NAME = ?");
+             PreparedStatement insert = connWarehouse.prepareStatement(
+                     "INSERT INTO etl_checkpoint (LOAD_NAME, WRITER, LAST_ORDER_ID, UPDATED_AT) VALUES (?, ?, ?, CURRENT_TIMESTAMP)")) {
+            delete.setString(1, loadName);
+            delete.executeUpdate();
+            for (int writer = 0; writer < writers; writer++) {
+                insert.setString(1, loadName);
+                insert.setInt(2, writer);
+                if (startOrderId == null) {
+                    insert.setNull(3, Types.INTEGER);
+                } else {
+                    insert.setInt(3, startOrderId);
+                }
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            connWarehouse.commit();
+        } catch (SQLException e) {
+            connWarehouse.rollback();
+            throw e;
+        } finally {
+            connWarehouse.setAutoCommit(autoCommit);
+        }
+    }
+
+    //every fact added so far is covered by the watermark; latestOrderDate is the newest ORDER_DATE among them
+    void mark(int orderId, Date latestOrderDate) {
+        if (orderId > markedOrderId) {
+            markedOrderId = orderId;
+        }
+        markedOrderDate = latestOrderDate;
+    }
+
+    //the facts added so far have been executed on the connection
+    void executed() {
+        executedOrderId = markedOrderId;
+        executedOrderDate = markedOrderDate;
+    }
+
+    //writes the watermark of the executed facts, to be called right before the commit that makes them durable
+    void beforeCommit() throws SQLException {
+        if (upsertStatement == null || executedOrderId == writtenOrderId) {
+            return;
+        }
+        upsertStatement.setInt(3, executedOrderId);
+        upsertStatement.setDate(4, executedOrderDate);
+        upsertStatement.executeUpdate();
+        writtenOrderId = executedOrderId;
+    }
+
+    void close() throws SQLException {
+        if (upsertStatement != null) {
+            upsertStatement.close();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.meshjoin;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+//bulk-load alternative to FactWriter for backfills. the facts are encoded as CSV into one reused byte
+//buffer and every batchSize rows the buffer is streamed to the server with LOAD DATA LOCAL INFILE,
+//handing Connector/J the buffer through setLocalInfileInputStream so no temp file is written.
+//the connection needs allowLoadLocalInfile=true and the server local_infile=1.
+//REPLACE overwrites facts that are already there, so replaying transactions after a resumed load is harmless
+class LoadDataFactWriter implements FactSink {
+
+    private static final String LOAD_SALES = """
+        LOAD DATA LOCAL INFILE 'meshjoin-sales.csv'
+        REPLACE INTO TABLE sales
+        FIELDS TERMINATED BY ','
+        LINES TERMINATED BY '\\n'
+        (ORDER_ID, ORDER_DATE, QUANTITY, CUSTOMER_ID, PRODUCT_ID, STORE_ID, SUPPLIER_ID, TOTAL_SALES, TIME_ID)
+        """;
+
+    //longest possible row: seven ints, a date, a two-decimal amount, separators and newline
+    private static final int MAX_ROW_BYTES = 9 * 21;
+
+    private final Connection connWarehouse;
+    private final Statement loadStatement;
+    //Connector/J's JdbcStatement.setLocalInfileInputStream, looked up reflectively so the driver
+    //stays a runtime-only dependency like everywhere else
+    private final Object driverStatement;
+    private final Method setLocalInfileInputStream;
+    private final int batchSize;
+    private final int commitInterval;
+    private final LoadCheckpoint checkpoint;
+    private final SalesCubes.Stripe cubes;
+
+    private byte[] buffer;
+    private int length;
+    private int pendingRows;
+    private int batchesSinceCommit;
+
+    LoadDataFactWriter(Connection connWarehouse, int batchSize, int commitInterval, LoadCheckpoint checkpoint,
+            SalesCubes.Stripe cubes) throws SQLException {
+        this.connWarehouse = connWarehouse;
+        this.checkpoint = checkpoint;
+        this.cubes = cubes;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+        this.buffer = new byte[batchSize * 48];
+        connWarehouse.setAutoCommit(false);
+        this.loadStatement = connWarehouse.createStatement();
+        try {
+            Class<?> jdbcStatement = Class.forName("com.mysql.cj.jdbc.JdbcStatement");
+            this.driverStatement = loadStatement.unwrap(jdbcStatement);
+            this.setLocalInfileInputStream = jdbcStatement.getMethod("setLocalInfileInputStream", InputStream.class);
+        } catch (ClassNotFoundException | NoSuchMethodException | SQLException e) {
+            loadStatement.close();
+            throw new SQLException("The LOAD DATA sink needs a MySQL Connector/J connection", e);
+        }
+    }
+
+    @Override
+    public void add(Transaction transaction, double totalSales, int storeId, int supplierId) throws SQLException {
+        cubes.add(transaction, totalSales, storeId, supplierId);
+        if (buffer.length - length < MAX_ROW_BYTES) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        appendInt(transaction.getOrderId());
+        appendByte(',');
+        appendDate(transaction.getOrderDate());
+        appendByte(',');
+        appendInt(transaction.getQuantity());
+        appendByte(',');
+        appendInt(transaction.getCustomerId());
+        appendByte(',');
+        appendInt(transaction.getProductId());
+        appendByte(',');
+        appendInt(storeId);
+        appendByte(',');
+        appendInt(supplierId);
+        appendByte(',');
+        appendCents(Math.round(totalSales * 100));
+        appendByte(',');
+        appendInt(transaction.getTimeId());
+        appendByte('\n');
+        if (++pendingRows >= batchSize) {
+            load();
+        }
+    }
+
+    @Override
+    public void mark(int lowWatermark, Date latestOrderDate) {
+        checkpoint.mark(lowWatermark, latestOrderDate);
+        if (pendingRows == 0) {
+            checkpoint.executed();
+        }
+    }
+
+    //the checkpoint row and the summary rows go into the same transaction as the facts they cover
+    @Override
+    public void commit() throws SQLException {
+        checkpoint.beforeCommit();
+        cubes.beforeCommit();
+        connWarehouse.commit();
+        batchesSinceCommit = 0;
+    }
+
+    @Override
+    public void finish() throws SQLException {
+        if (pendingRows > 0) {
+            load();
+        }
+        commit();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            loadStatement.close();
+        } finally {
+            try {
+                checkpoint.close();
+            } finally {
+                cubes.close();
+            }
+        }
+    }
+
+    private void load() throws SQLException {
+        cubes.beforeExecute();
+        setStream(new ByteArrayInputStream(buffer, 0, length));
+        try {
+            loadStatement.execute(LOAD_SALES);
+        } finally {
+            setStream(null);
+        }
+        length = 0;
+        pendingRows = 0;
+        checkpoint.executed();
+        cubes.executed();
+        if (++batchesSinceCommit >= commitInterval) {
+            commit();
+        }
+    }
+
+    private void setStream(InputStream stream) throws SQLException {
+        try {
+            setLocalInfileInputStream.invoke(driverStatement, stream);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("Could not hand the fact buffer to Connector/J", e);
+        }
+    }
+
+    private void appendByte(char c) {
+        buffer[length++] = (byte) c;
+    }
+
+    private void appendInt(int value) {
+        long digits = value;
+        if (digits < 0) {
+            appendByte('-');
+            digits = -digits;
+        }
+        appendDigits(digits);
+    }
+
+    //writes a non-negative number without going through a String
+    private void appendDigits(long value) {
+        int start = length;
+        do {
+            buffer[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+    }
+
+    //writes yyyy-mm-dd, or \N for a transaction without a date
+    private void appendDate(Date date) {
+        if (date == null) {
+            appendByte('\\');
+            appendByte('N');
+            return;
+        }
+        LocalDate day = date.toLocalDate();
+        appendDigits(day.getYear());
+        appendByte('-');
+        appendTwoDigits(day.getMonthValue());
+        appendByte('-');
+        appendTwoDigits(day.getDayOfMonth());
+    }
+
+    private void appendTwoDigits(int value) {
+        appendByte((char) ('0' + value / 10));
+        appendByte((char) ('0' + value % 10));
+    }
+
+    //writes an amount given in cents as units.cc, matching TOTAL_SALES DECIMAL(10,2)
+    private void appendCents(long cents) {
+        if (cents < 0) {
+            appendByte('-');
+            cents = -cents;
+        }
+        appendDigits(cents / 100);
+        appendByte('.');
+        long fraction = cents % 100;
+        appendByte((char) ('0' + fraction / 10));
+        appendByte((char) ('0' + fraction % 10));
+    }
+}
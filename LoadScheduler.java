@@ -0,0 +1,182 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//runs a load from the source database as the runs --split divides it into, up to --concurrent-runs of
+//them at a time. every run borrows the connections it needs from the shared pool one after the other
+//and returns them when it ends. no more runs load at a time than the pool holds all the connections of,
+//so a run never waits for a connection another waiting run holds, and the pool is never asked for more
+//than --max-connections. the runs loading at a time share --join-memory. a run has its own load name and
+//so its own checkpoint, its own metrics and its own stripes of the summary tables; a failed run does
+//not stop the others and can be run again with --mode=incremental. the last run of a split loads the
+//remainder none of the other runs covers, so the runs together load every transaction
+final class LoadScheduler {
+
+    private static final DateTimeFormatter MONTH_NAME = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private final EtlConfig config;
+    private final ConnectionPool pool;
+    private final String sourceUrl;
+    private final String warehouseUrl;
+
+    LoadScheduler(EtlConfig config, ConnectionPool pool, String sourceUrl, String warehouseUrl) {
+        this.config = config;
+        this.pool = pool;
+        this.sourceUrl = sourceUrl;
+        this.warehouseUrl = warehouseUrl;
+    }
+
+    //runs every run to its end, true when all of them succeeded
+    boolean run() throws SQLException, InterruptedException {
+        List<LoadScope> scopes;
+        if (config.getSplit() == EtlConfig.Split.NONE) {
+            scopes = new ArrayList<>();
+            scopes.add(LoadScope.ALL);
+        } else {
+            try (Connection connSource = pool.borrow(sourceUrl)) {
+                scopes = plan(connSource, config.getSplit());
+            }
+        }
+        int connectionsPerRun = config.getConnectionsPerRun();
+        if (pool.getMaxConnections() < connectionsPerRun) {
+            throw new IllegalArgumentException("A pool of " + pool.getMaxConnections()
+                    + " connections cannot hold the " + connectionsPerRun + " of one run");
+        }
+        int concurrency = Math.max(1, Math.min(Math.min(config.getConcurrentRuns(), scopes.size()),
+                pool.getMaxConnections() / connectionsPerRun));
+        if (scopes.size() > 1) {
+            System.out.printf("Load %s is split into %d runs by %s, %d at a time over at most %d connections%n",
+                    config.getLoadName(), scopes.size(), config.getSplit().name().toLowerCase(Locale.ROOT), concurrency,
+                    pool.getMaxConnections());
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+                runnable -> new Thread(runnable, "etl-run-" + threads.incrementAndGet()));
+        List<EtlConfig> runs = new ArrayList<>();
+        List<Future<EtlMetrics>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < scopes.size(); i++) {
+                EtlConfig run = config.forRun(scopes.get(i), i, concurrency);
+                runs.add(run);
+                results.add(executor.submit(() -> load(run)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int failed = 0;
+        long joined = 0;
+        long dropped = 0;
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                EtlMetrics metrics = results.get(i).get();
+                joined += metrics.getRowsJoined();
+                dropped += metrics.getRowsDropped();
+            } catch (ExecutionException e) {
+                failed++;
+                System.err.println("Run " + runs.get(i).getLoadName() + " failed:");
+                e.getCause().printStackTrace();
+            }
+        }
+        if (scopes.size() > 1) {
+            System.out.printf("%d of %d runs of load %s finished, %d transactions matched, %d unmatched%n",
+                    runs.size() - failed, runs.size(), config.getLoadName(), joined, dropped);
+        }
+        return failed == 0;
+    }
+
+    //one run: its checkpoint, then the join of its slice of the transactions
+    private EtlMetrics load(EtlConfig run) throws Exception {
+        String name = run.getLoadName();
+        EtlMetrics metrics = new EtlMetrics(run.getScope().getName() == null ? null : name);
+        long startNanos = System.nanoTime();
+        List<Connection> connections = new ArrayList<>();
+        try {
+            List<Connection> warehouseConnections = new ArrayList<>();
+            for (int i = 0; i < run.getParallelism(); i++) {
+                warehouseConnections.add(borrow(connections, warehouseUrl, metrics));
+            }
+            Connection connSource = borrow(connections, sourceUrl, metrics);
+            Connection connMaster = borrow(connections, sourceUrl, metrics);
+            System.out.printf("Run %s started on %s%n", name, run.getScope());
+
+            //an incremental run continues after its own checkpoint, a full one starts it over
+            int startOrderId = LoadCheckpoint.begin(warehouseConnections.get(0), run);
+            if (startOrderId != Integer.MIN_VALUE) {
+                System.out.printf("Load %s resumes after ORDER_ID %d%n", name, startOrderId);
+            }
+            try (TransactionReader transactions = new TransactionReader(connSource, run.getSegmentSize(), startOrderId,
+                    run.getScope())) {
+                MeshJoinProcessor.meshJoin(transactions, new JdbcMasterDataSource(connMaster, run.getScope()),
+                        warehouseConnections, startOrderId, run, metrics);
+            }
+            System.out.printf("Run %s finished in %d s%n", name, (System.nanoTime() - startNanos) / 1_000_000_000L);
+            return metrics;
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private Connection borrow(List<Connection> connections, String url, EtlMetrics metrics)
+            throws SQLException, InterruptedException {
+        Connection connection = MeteredConnection.wrap(pool.borrow(url), metrics);
+        connections.add(connection);
+        return connection;
+    }
+
+    //the slices of the source a split load runs, in the order they are started. the remainder comes last
+    static List<LoadScope> plan(Connection connSource, EtlConfig.Split split) throws SQLException {
+        List<LoadScope> scopes = new ArrayList<>();
+        try (Statement stmt = connSource.createStatement()) {
+            if (split == EtlConfig.Split.STORE) {
+                try (ResultSet rs = stmt.executeQuery("SELECT DISTINCT STORE_ID FROM products WHERE STORE_ID IS NOT NULL"
+                        + " ORDER BY STORE_ID")) {
+                    while (rs.next()) {
+                        scopes.add(LoadScope.store(rs.getInt(1)));
+                    }
+                }
+                scopes.add(LoadScope.noStore());
+                return scopes;
+            }
+            //only the months that have transactions, a stray date must not plan runs for every month up to it
+            int months = split == EtlConfig.Split.QUARTER ? 3 : 1;
+            Set<LocalDate> starts = new TreeSet<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT DISTINCT YEAR(ORDER_DATE), MONTH(ORDER_DATE) FROM transactions"
+                    + " WHERE ORDER_DATE IS NOT NULL")) {
+                while (rs.next()) {
+                    int month = (rs.getInt(2) - 1) / months * months + 1;
+                    starts.add(LocalDate.of(rs.getInt(1), month, 1));
+                }
+            }
+            for (LocalDate from : starts) {
+                String name = months == 1 ? from.format(MONTH_NAME)
+                        : from.getYear() + "-q" + ((from.getMonthValue() - 1) / 3 + 1);
+                scopes.add(LoadScope.dates(name, from, from.plusMonths(months)));
+            }
+            scopes.add(LoadScope.noDate());
+        }
+        return scopes;
+    }
+}
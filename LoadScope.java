@@ -0,0 +1,113 @@
+package com.meshjoin;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+//the slice of the source one run of a load reads: everything, the transactions of one store, or
+//those of a date range. a store run also restricts the products to that store, so its join scans only
+//the master rows it can match. a split also has a remainder for what none of its slices covers, so the
+//slices together read every transaction once. the filters are SQL fragments with placeholders the
+//scope binds itself
+final class LoadScope {
+
+    private enum Kind { ALL, STORE, DATES, NO_STORE, NO_DATE }
+
+    static final LoadScope ALL = new LoadScope(Kind.ALL, null, 0, null, null);
+
+    private final Kind kind;
+    //suffix of the run's load name, null for ALL
+    private final String name;
+    private final int storeId;
+    //[from, until) for a date range, both null otherwise
+    private final LocalDate from;
+    private final LocalDate until;
+
+    private LoadScope(Kind kind, String name, int storeId, LocalDate from, LocalDate until) {
+        this.kind = kind;
+        this.name = name;
+        this.storeId = storeId;
+        this.from = from;
+        this.until = until;
+    }
+
+    static LoadScope store(int storeId) {
+        return new LoadScope(Kind.STORE, "store-" + storeId, storeId, null, null);
+    }
+
+    //the transactions ordered from the first day on and before until
+    static LoadScope dates(String name, LocalDate from, LocalDate until) {
+        return new LoadScope(Kind.DATES, name, 0, from, until);
+    }
+
+    //what a store split leaves over: transactions of a product that is missing from the products table
+    //or has no store. the master data leaves storeless products out, so they all end in the unmatched file
+    static LoadScope noStore() {
+        return new LoadScope(Kind.NO_STORE, "store-none", 0, null, null);
+    }
+
+    //what a month or quarter split leaves over: the transactions without an ORDER_DATE
+    static LoadScope noDate() {
+        return new LoadScope(Kind.NO_DATE, "no-date", 0, null, null);
+    }
+
+    //appended to the load name of the run, so every slice keeps its own checkpoint
+    String getName() {
+        return name;
+    }
+
+    //appended to a WHERE clause on the transactions table
+    String transactionFilter() {
+        switch (kind) {
+            case STORE:
+                return " AND PRODUCT_ID IN (SELECT PRODUCT_ID FROM products WHERE STORE_ID = ?)";
+            case DATES:
+                return " AND ORDER_DATE >= ? AND ORDER_DATE < ?";
+            case NO_STORE:
+                //IN over a NULL PRODUCT_ID is unknown, so no store run reads those either
+                return " AND (PRODUCT_ID IS NULL OR PRODUCT_ID NOT IN"
+                        + " (SELECT PRODUCT_ID FROM products WHERE STORE_ID IS NOT NULL))";
+            case NO_DATE:
+                return " AND ORDER_DATE IS NULL";
+            default:
+                return "";
+        }
+    }
+
+    //binds the placeholders of transactionFilter from parameter index on and returns the next free index
+    int bindTransactionFilter(PreparedStatement pstmt, int index) throws SQLException {
+        if (kind == Kind.STORE) {
+            pstmt.setInt(index++, storeId);
+        } else if (kind == Kind.DATES) {
+            pstmt.setDate(index++, Date.valueOf(from));
+            pstmt.setDate(index++, Date.valueOf(until));
+        }
+        return index;
+    }
+
+    //WHERE clause on the products table, empty when every product takes part
+    String productFilter() {
+        switch (kind) {
+            case STORE:
+                return " WHERE STORE_ID = ?";
+            case NO_STORE:
+                //none of its transactions can join a product with a store
+                return " WHERE FALSE";
+            default:
+                return "";
+        }
+    }
+
+    int bindProductFilter(PreparedStatement pstmt, int index) throws SQLException {
+        if (kind == Kind.STORE) {
+            pstmt.setInt(index++, storeId);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return name == null ? "all transactions" : name;
+    }
+}
@@ -0,0 +1,18 @@
+package com.meshjoin;
+
+import java.sql.SQLException;
+import java.util.List;
+
+//the disk-resident relations MESHJOIN scans cyclically; partitions are addressed by row offset
+//in a fixed order, so consecutive offsets cover every row exactly once
+interface MasterDataSource {
+
+    int customerCount() throws SQLException;
+
+    int productCount() throws SQLException;
+
+    List<Customer> loadCustomers(int offset, int limit) throws SQLException;
+
+    //products come with their store and supplier, so a joined tuple can be enriched from the buffer alone
+    List<Product> loadProducts(int offset, int limit) throws SQLException;
+}
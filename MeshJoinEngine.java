@@ -0,0 +1,580 @@
+package com.meshjoin;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//MESHJOIN over the stream of transactions and the customer/product master data.
+//the master data is scanned cyclically, one partition per iteration, and each loaded partition
+//is probed against every stream chunk held in the window. a chunk enters the window with one
+//iteration and leaves it once it has seen every master partition, so the master data is read
+//once per window instead of once per transaction.
+//the window is hash-partitioned on CUSTOMER_ID into one shard per sink; every loaded partition
+//is probed against all shards in parallel and each shard emits its tuples to its own sink.
+//a tuple that leaves the window without its customer or product goes to a bounded retry queue and
+//rides along with a later chunk for another full cycle, so master rows that arrive late still join;
+//once its retries are used up, or the queue is full, it is handed to the unmatched sink.
+//every relation is counted again whenever its scan starts a new cycle, so the partitions of rows
+//appended since the last cycle are scanned as well and the chunks admitted from then on stay in the
+//window long enough to see them
+//after every expiry the sinks get the low watermark: the ORDER_ID below every tuple still in the
+//window or the retry queue, which the writers checkpoint once their facts up to it are committed.
+//the window holds its tuples in struct-of-arrays form and indexes them with open-addressing int
+//tables chained through the tuple slots, so admitting, probing and expiring allocate nothing per
+//row; a Transaction is only built for a tuple when it leaves the join
+class MeshJoinEngine implements AutoCloseable {
+
+    //supplies stream chunks in arrival order, an empty chunk means the stream is exhausted
+    interface TransactionStream {
+        TransactionChunk nextChunk() throws SQLException, InterruptedException;
+
+        //whether nextChunk would return without waiting for the source; a stream that reads
+        //synchronously always has its next chunk ready
+        default boolean hasChunkReady() {
+            return true;
+        }
+    }
+
+    //receives the tuples of a chunk when it leaves the window
+    interface JoinSink {
+        void onMatch(Transaction transaction, Customer customer, Product product) throws SQLException;
+
+        //the chunk is done; every ORDER_ID up to lowWatermark has now left the join, matched or spilled
+        void onChunkExpired(int lowWatermark) throws SQLException, InterruptedException;
+    }
+
+    //side output for tuples that found no customer or product, not even after their retries
+    interface UnmatchedSink {
+        void onUnmatched(Transaction transaction, boolean customerFound, boolean productFound) throws SQLException;
+    }
+
+    //creates an engine that emits into the given sinks, one shard per sink, so the sinks can live on the join thread
+    interface Factory {
+        MeshJoinEngine create(List<JoinSink> sinks) throws SQLException;
+    }
+
+    private final MasterDataSource masterData;
+    private final JoinSizing sizing;
+    private final int customerPartitionSize;
+    private final int productPartitionSize;
+
+    //partitions of the current cycle over each relation and the next one to load
+    private int customerPartitions;
+    private int productPartitions;
+    private int customerCursor;
+    private int productCursor;
+    //whether the scan has completed a cycle over the relation, so its partitions are loaded again
+    private boolean customersCycled;
+    private boolean productsCycled;
+    //number of iterations a chunk stays in the window, enough to see every partition of both relations
+    private int windowSize;
+
+    //queue of stream chunks, oldest first
+    private final Deque<WindowChunk> window = new ArrayDeque<>();
+    private final JoinShard[] shards;
+    //runs the shards in parallel, null when there is only one
+    private final ExecutorService shardWorkers;
+    private final UnmatchedSink unmatchedSink;
+    private final EtlMetrics metrics;
+
+    private final int retryCycles;
+    //unmatched tuples in the shards' retry queues, waiting to be admitted again; at most retryCapacity
+    private int retryQueued;
+    private final int retryCapacity;
+
+    //highest ORDER_ID admitted so far
+    private int lastOrderId = Integer.MIN_VALUE;
+
+    MeshJoinEngine(MasterDataSource masterData, JoinSizing sizing, List<JoinSink> sinks, UnmatchedSink unmatchedSink,
+            EtlConfig config, EtlMetrics metrics) throws SQLException {
+        this.masterData = masterData;
+        this.sizing = sizing;
+        this.unmatchedSink = unmatchedSink;
+        this.retryCycles = config.getRetryCycles();
+        this.retryCapacity = config.getRetryCapacity();
+        this.metrics = metrics;
+        this.customerPartitionSize = sizing.getCustomerPartitionRows();
+        this.productPartitionSize = sizing.getProductPartitionRows();
+        this.customerPartitions = partitionCount(masterData.customerCount(), customerPartitionSize);
+        this.productPartitions = partitionCount(masterData.productCount(), productPartitionSize);
+        this.windowSize = Math.max(customerPartitions, productPartitions);
+        this.shards = new JoinShard[sinks.size()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new JoinShard(i, sinks.get(i), metrics);
+        }
+        this.shardWorkers = shards.length > 1 ? Executors.newFixedThreadPool(shards.length) : null;
+    }
+
+    //every iteration admits one chunk, loads the next partition of each relation, probes it against
+    //the window and expires the chunks that have completed a full cycle over the master data.
+    //a chunk is made of the stream's segments up to the chunk size JoinSizing asks for, taking more
+    //only while they are ready, and the time spent on the master scan and on the tuples is fed back
+    //to JoinSizing to size the next one.
+    //once the stream is exhausted the scan keeps cycling until the window and the retry queue drain
+    void run(TransactionStream stream) throws SQLException, InterruptedException {
+        boolean streamOpen = true;
+        List<TransactionChunk> arrivals = new ArrayList<>();
+        while (streamOpen || !window.isEmpty() || retryQueued > 0) {
+            arrivals.clear();
+            int admitted = 0;
+            while (streamOpen && admitted < sizing.getChunkRows() && (admitted == 0 || stream.hasChunkReady())) {
+                TransactionChunk segment = stream.nextChunk();
+                streamOpen = !segment.isEmpty();
+                arrivals.add(segment);
+                admitted += segment.size();
+            }
+            long start = System.nanoTime();
+            if (customerCursor == customerPartitions || productCursor == productPartitions) {
+                startCycle();
+            }
+            if (admitted > 0 || retryQueued > 0) {
+                admit(arrivals);
+            }
+            long tupleNanos = System.nanoTime() - start;
+            if (window.isEmpty()) {
+                break;
+            }
+
+            int customerOffset = customerCursor++ * customerPartitionSize;
+            int productOffset = productCursor++ * productPartitionSize;
+            start = System.nanoTime();
+            List<Customer> customers = masterData.loadCustomers(customerOffset, customerPartitionSize);
+            List<Product> products = masterData.loadProducts(productOffset, productPartitionSize);
+            metrics.record(EtlMetrics.Stage.PARTITION_LOAD, start);
+            metrics.addPartitionLoad(customersCycled);
+            metrics.addPartitionLoad(productsCycled);
+
+            long probeStart = System.nanoTime();
+            forEachShard(shard -> shard.probe(customers, products));
+            metrics.record(EtlMetrics.Stage.PROBE, probeStart);
+            long scanNanos = System.nanoTime() - start;
+
+            for (WindowChunk chunk : window) {
+                chunk.remaining--;
+            }
+            while (!window.isEmpty() && window.peekFirst().remaining <= 0) {
+                WindowChunk expired = window.pollFirst();
+                start = System.nanoTime();
+                forEachShard(shard -> shard.expire(expired.end[shard.id]));
+                for (JoinShard shard : shards) {
+                    retryOrSpill(shard);
+                }
+                tupleNanos += System.nanoTime() - start;
+                //handing the batches over can wait on the writers, which is not the join's own cost
+                int lowWatermark = lowWatermark();
+                for (JoinShard shard : shards) {
+                    shard.sink.onChunkExpired(lowWatermark);
+                }
+            }
+            sizing.recordIteration(scanNanos, tupleNanos, admitted, metrics.getArrivalRate());
+            metrics.setWindow(windowSize, sizing.getChunkRows());
+        }
+    }
+
+    //restarts the scan of every relation that has completed its cycle, with its partitions counted again.
+    //the rows are read in key order, so appended rows only add partitions at the end and a chunk already
+    //in the window still sees every partition it was admitted for
+    private void startCycle() throws SQLException {
+        if (customerCursor == customerPartitions) {
+            customerPartitions = partitionCount(masterData.customerCount(), customerPartitionSize);
+            customerCursor = 0;
+            customersCycled = true;
+        }
+        if (productCursor == productPartitions) {
+            productPartitions = partitionCount(masterData.productCount(), productPartitionSize);
+            productCursor = 0;
+            productsCycled = true;
+        }
+        windowSize = Math.max(customerPartitions, productPartitions);
+    }
+
+    //adds a chunk to the window together with the queued retries. every shard appends the rows of
+    //its CUSTOMER_ID hash and its own retries, the chunk remembers where each shard's part ends
+    private void admit(List<TransactionChunk> arrivals) throws SQLException, InterruptedException {
+        WindowChunk chunk = new WindowChunk(windowSize, shards.length);
+        for (TransactionChunk segment : arrivals) {
+            for (int row = 0; row < segment.size(); row++) {
+                chunk.minOrderId = Math.min(chunk.minOrderId, segment.orderId(row));
+                lastOrderId = Math.max(lastOrderId, segment.orderId(row));
+            }
+        }
+        for (JoinShard shard : shards) {
+            chunk.minOrderId = Math.min(chunk.minOrderId, shard.retries.minOrderId());
+        }
+        forEachShard(shard -> chunk.end[shard.id] = shard.admit(arrivals, shards.length));
+        retryQueued = 0;
+        window.addLast(chunk);
+    }
+
+    //the half of a match a tuple already found is kept, the next cycle only has to supply the rest
+    private void retryOrSpill(JoinShard shard) throws SQLException {
+        TupleBuffer unmatched = shard.unmatched;
+        int retried = 0;
+        int dropped = 0;
+        while (!unmatched.isEmpty()) {
+            int slot = unmatched.slot(unmatched.head);
+            if (unmatched.retries[slot] < retryCycles && retryQueued < retryCapacity) {
+                shard.retries.append(unmatched, unmatched.head, unmatched.retries[slot] + 1);
+                retryQueued++;
+                retried++;
+            } else {
+                unmatchedSink.onUnmatched(unmatched.transaction(unmatched.head), unmatched.customer[slot] != null,
+                        unmatched.product[slot] != null);
+                dropped++;
+            }
+            unmatched.removeFirst();
+        }
+        metrics.addRetried(retried);
+        metrics.addDropped(dropped);
+    }
+
+    //highest ORDER_ID below every tuple still in the window or the retry queue. as the stream arrives
+    //in ORDER_ID order, everything up to it has been emitted or spilled
+    private int lowWatermark() {
+        int unresolved = Integer.MAX_VALUE;
+        for (WindowChunk chunk : window) {
+            unresolved = Math.min(unresolved, chunk.minOrderId);
+        }
+        for (JoinShard shard : shards) {
+            unresolved = Math.min(unresolved, shard.retries.minOrderId());
+        }
+        return unresolved == Integer.MAX_VALUE ? lastOrderId : unresolved - 1;
+    }
+
+    private static int shardOf(int customerId, int shards) {
+        return Math.floorMod(customerId * 0x9E3779B9, shards);
+    }
+
+    private interface ShardTask {
+        void run(JoinShard shard) throws SQLException, InterruptedException;
+    }
+
+    private void forEachShard(ShardTask task) throws SQLException, InterruptedException {
+        if (shardWorkers == null) {
+            task.run(shards[0]);
+            return;
+        }
+        List<Callable<Void>> calls = new ArrayList<>(shards.length);
+        for (JoinShard shard : shards) {
+            calls.add(() -> {
+                task.run(shard);
+                return null;
+            });
+        }
+        for (Future<Void> result : shardWorkers.invokeAll(calls)) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                throw EtlPipeline.unwrap(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (shardWorkers != null) {
+            shardWorkers.shutdownNow();
+        }
+    }
+
+    private static int partitionCount(int rows, int partitionSize) {
+        return Math.max(1, (rows + partitionSize - 1) / partitionSize);
+    }
+
+    //one slice of the window with its own hash index on each join attribute. the index maps a key to
+    //the first and last tuple with that key, the tuples in between are chained through nextByCustomer
+    //and nextByProduct in arrival order
+    private static final class JoinShard {
+        private final int id;
+        private final JoinSink sink;
+        private final EtlMetrics metrics;
+        private final TupleBuffer window = new TupleBuffer(1024);
+        //tuples of the last expired chunk that did not match, collected for the retry queue
+        private final TupleBuffer unmatched = new TupleBuffer(64);
+        //this shard's part of the retry queue
+        private final TupleBuffer retries = new TupleBuffer(64);
+        private final IntIntHashMap customerFirst = new IntIntHashMap(1024, -1);
+        private final IntIntHashMap customerLast = new IntIntHashMap(1024, -1);
+        private final IntIntHashMap productFirst = new IntIntHashMap(1024, -1);
+        private final IntIntHashMap productLast = new IntIntHashMap(1024, -1);
+
+        JoinShard(int id, JoinSink sink, EtlMetrics metrics) {
+            this.id = id;
+            this.sink = sink;
+            this.metrics = metrics;
+        }
+
+        //appends the chunk's rows of this shard and the queued retries, returns the sequence number the chunk ends at
+        int admit(List<TransactionChunk> arrivals, int shards) {
+            for (TransactionChunk segment : arrivals) {
+                for (int row = 0; row < segment.size(); row++) {
+                    if (shardOf(segment.customerId(row), shards) == id) {
+                        index(window.append(segment, row));
+                    }
+                }
+            }
+            while (!retries.isEmpty()) {
+                index(window.append(retries, retries.head, retries.retries[retries.slot(retries.head)]));
+                retries.removeFirst();
+            }
+            return window.tail;
+        }
+
+        //every master row is one lookup in this shard's index, a hit when its key is in the window
+        void probe(List<Customer> customers, List<Product> products) {
+            int hits = 0;
+            for (int i = 0; i < customers.size(); i++) {
+                Customer customer = customers.get(i);
+                int sequence = customerFirst.get(customer.getCustomerId());
+                if (sequence >= 0) {
+                    hits++;
+                    do {
+                        int slot = window.slot(sequence);
+                        window.customer[slot] = customer;
+                        sequence = window.nextByCustomer[slot];
+                    } while (sequence >= 0);
+                }
+            }
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                int sequence = productFirst.get(product.getProductId());
+                if (sequence >= 0) {
+                    hits++;
+                    do {
+                        int slot = window.slot(sequence);
+                        window.product[slot] = product;
+                        sequence = window.nextByProduct[slot];
+                    } while (sequence >= 0);
+                }
+            }
+            metrics.addBufferProbes(hits, customers.size() + products.size() - hits);
+        }
+
+        //chunks leave the window in arrival order, so their tuples are always the first of their keys
+        void expire(int end) throws SQLException, InterruptedException {
+            int joined = 0;
+            while (window.head != end) {
+                int slot = window.slot(window.head);
+                unindex(customerFirst, customerLast, window.customerId[slot], window.nextByCustomer[slot]);
+                unindex(productFirst, productLast, window.productId[slot], window.nextByProduct[slot]);
+                if (window.customer[slot] != null && window.product[slot] != null) {
+                    sink.onMatch(window.transaction(window.head), window.customer[slot], window.product[slot]);
+                    joined++;
+                } else {
+                    unmatched.append(window, window.head, window.retries[slot]);
+                }
+                window.removeFirst();
+            }
+            metrics.addJoined(joined);
+        }
+
+        private void index(int sequence) {
+            int slot = window.slot(sequence);
+            int previous = customerLast.get(window.customerId[slot]);
+            if (previous < 0) {
+                customerFirst.put(window.customerId[slot], sequence);
+            } else {
+                window.nextByCustomer[window.slot(previous)] = sequence;
+            }
+            customerLast.put(window.customerId[slot], sequence);
+
+            previous = productLast.get(window.productId[slot]);
+            if (previous < 0) {
+                productFirst.put(window.productId[slot], sequence);
+            } else {
+                window.nextByProduct[window.slot(previous)] = sequence;
+            }
+            productLast.put(window.productId[slot], sequence);
+        }
+
+        private static void unindex(IntIntHashMap first, IntIntHashMap last, int key, int next) {
+            if (next < 0) {
+                first.remove(key);
+                last.remove(key);
+            } else {
+                first.put(key, next);
+            }
+        }
+    }
+
+    private static final class WindowChunk {
+        //per shard, the sequence number after the chunk's last tuple
+        private final int[] end;
+        private int remaining;
+        private int minOrderId = Integer.MAX_VALUE;
+
+        WindowChunk(int remaining, int shards) {
+            this.remaining = remaining;
+            this.end = new int[shards];
+        }
+    }
+
+    //a FIFO of window tuples in struct-of-arrays form. tuples are addressed by sequence numbers that
+    //count up from 0 and wrap to 0 after Integer.MAX_VALUE; a tuple lives in slot sequence & mask, and
+    //the buffer doubles when it is full without changing any sequence number
+    static final class TupleBuffer {
+        private int[] orderId;
+        private int[] epochDay;
+        private int[] productId;
+        private int[] quantity;
+        private int[] customerId;
+        private int[] timeId;
+        //full cycles the tuple has already been re-admitted for
+        private int[] retries;
+        //the master rows found so far, null until then
+        private Customer[] customer;
+        private Product[] product;
+        //sequence number of the next window tuple with the same key, -1 for the last one
+        private int[] nextByCustomer;
+        private int[] nextByProduct;
+        private int mask;
+        //ORDER_DATEs already built, direct-mapped by epoch day: a load spans few distinct days, so most
+        //emitted tuples share a Date instead of converting their day again
+        private final Date[] orderDates = new Date[256];
+        private final int[] orderDateDays = new int[256];
+        //oldest tuple and the one after the newest
+        int head;
+        int tail;
+
+        TupleBuffer(int capacity) {
+            allocate(capacity);
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+
+        int slot(int sequence) {
+            return sequence & mask;
+        }
+
+        int append(TransactionChunk chunk, int row) {
+            return append(chunk.orderId(row), chunk.epochDay(row), chunk.productId(row), chunk.quantity(row),
+                    chunk.customerId(row), chunk.timeId(row), 0, null, null);
+        }
+
+        int append(TupleBuffer from, int sequence, int retries) {
+            int slot = from.slot(sequence);
+            return append(from.orderId[slot], from.epochDay[slot], from.productId[slot], from.quantity[slot],
+                    from.customerId[slot], from.timeId[slot], retries, from.customer[slot], from.product[slot]);
+        }
+
+        private int append(int orderId, int epochDay, int productId, int quantity, int customerId, int timeId,
+                int retries, Customer customer, Product product) {
+            if (((tail - head) & Integer.MAX_VALUE) > mask) {
+                grow();
+            }
+            int slot = slot(tail);
+            this.orderId[slot] = orderId;
+            this.epochDay[slot] = epochDay;
+            this.productId[slot] = productId;
+            this.quantity[slot] = quantity;
+            this.customerId[slot] = customerId;
+            this.timeId[slot] = timeId;
+            this.retries[slot] = retries;
+            this.customer[slot] = customer;
+            this.product[slot] = product;
+            this.nextByCustomer[slot] = -1;
+            this.nextByProduct[slot] = -1;
+            int sequence = tail;
+            tail = (tail + 1) & Integer.MAX_VALUE;
+            return sequence;
+        }
+
+        //drops the oldest tuple, letting go of its master rows
+        void removeFirst() {
+            int slot = slot(head);
+            customer[slot] = null;
+            product[slot] = null;
+            head = (head + 1) & Integer.MAX_VALUE;
+        }
+
+        int minOrderId() {
+            int min = Integer.MAX_VALUE;
+            for (int sequence = head; sequence != tail; sequence = (sequence + 1) & Integer.MAX_VALUE) {
+                min = Math.min(min, orderId[slot(sequence)]);
+            }
+            return min;
+        }
+
+        Transaction transaction(int sequence) {
+            int slot = slot(sequence);
+            return new Transaction(orderId[slot], orderDate(epochDay[slot]), productId[slot], quantity[slot],
+                    customerId[slot], timeId[slot]);
+        }
+
+        private Date orderDate(int epochDay) {
+            if (epochDay == TransactionChunk.NO_DATE) {
+                return null;
+            }
+            int entry = epochDay & (orderDates.length - 1);
+            if (orderDates[entry] == null || orderDateDays[entry] != epochDay) {
+                orderDates[entry] = TransactionChunk.orderDate(epochDay);
+                orderDateDays[entry] = epochDay;
+            }
+            return orderDates[entry];
+        }
+
+        private void allocate(int capacity) {
+            orderId = new int[capacity];
+            epochDay = new int[capacity];
+            productId = new int[capacity];
+            quantity = new int[capacity];
+            customerId = new int[capacity];
+            timeId = new int[capacity];
+            retries = new int[capacity];
+            customer = new Customer[capacity];
+            product = new Product[capacity];
+            nextByCustomer = new int[capacity];
+            nextByProduct = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        //doubles every column; a tuple either keeps its slot or moves up by the old capacity, which is
+        //free in the doubled arrays
+        private void grow() {
+            int capacity = (mask + 1) * 2;
+            orderId = Arrays.copyOf(orderId, capacity);
+            epochDay = Arrays.copyOf(epochDay, capacity);
+            productId = Arrays.copyOf(productId, capacity);
+            quantity = Arrays.copyOf(quantity, capacity);
+            customerId = Arrays.copyOf(customerId, capacity);
+            timeId = Arrays.copyOf(timeId, capacity);
+            retries = Arrays.copyOf(retries, capacity);
+            customer = Arrays.copyOf(customer, capacity);
+            product = Arrays.copyOf(product, capacity);
+            nextByCustomer = Arrays.copyOf(nextByCustomer, capacity);
+            nextByProduct = Arrays.copyOf(nextByProduct, capacity);
+            int oldMask = mask;
+            mask = capacity - 1;
+            for (int sequence = head; sequence != tail; sequence = (sequence + 1) & Integer.MAX_VALUE) {
+                int from = sequence & oldMask;
+                int to = slot(sequence);
+                if (from != to) {
+                    orderId[to] = orderId[from];
+                    epochDay[to] = epochDay[from];
+                    productId[to] = productId[from];
+                    quantity[to] = quantity[from];
+                    customerId[to] = customerId[from];
+                    timeId[to] = timeId[from];
+                    retries[to] = retries[from];
+                    customer[to] = customer[from];
+                    product[to] = product[from];
+                    customer[from] = null;
+                    product[from] = null;
+                    nextByCustomer[to] = nextByCustomer[from];
+                    nextByProduct[to] = nextByProduct[from];
+                }
+            }
+        }
+    }
+}
@@ -1,462 +1,161 @@
 package com.meshjoin;
 
-import java.sql.PreparedStatement;
-import java.sql.Date;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 
 public class MeshJoinProcessor 
 {
-    private static final String DB_URL_TEMPLATE = "jdbc:mysql://localhost:3306/%s?useSSL=false";
-    //partition that is being loaded into w
-    private static int PARTITION_SIZE = 200; 
-
-    //user input for databases from which the data has to be loaded and where data has to be placed
-    //connection is also provided over here
+    //rewriteBatchedStatements turns the fact batches into multi-row INSERTs, the server-side prepared
+    //statements are cached per connection so the long-lived statements are only parsed once
+    static final String DB_URL_TEMPLATE = "jdbc:mysql://%s/%s?useSSL=false"
+            + "&rewriteBatchedStatements=true&useServerPrepStmts=true&cachePrepStmts=true";
+
+    //run settings such as --parallelism=N come from the command line, a --config properties file or
+    //METRO_ETL_ environment variables; the databases and login are only asked for when none of them
+    //gives them, so a scheduled load runs without a console
     public static void main(String[] args) {
+        EtlConfig config;
+        try {
+            config = EtlConfig.load(args, System.getenv());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        boolean fromCsv = config.getSource() == EtlConfig.Source.CSV;
         Scanner scanner = new Scanner(System.in);
 
-        // Prompt user for database names and credentials
-        System.out.print("Enter name of the datasource database: ");
-        String datasourceName = scanner.nextLine();
-
-        System.out.print("Enter name of the datawarehouse database: ");
-        String datawarehouseName = scanner.nextLine();
-
-        System.out.print("Enter database username: ");
-        String user = scanner.nextLine();
-
-        System.out.print("Enter database password: ");
-        String pass = scanner.nextLine();
-
-        // Construct database URLs
-        String dbUrlSource = String.format(DB_URL_TEMPLATE, datasourceName);
-        String dbUrlWarehouse = String.format(DB_URL_TEMPLATE, datawarehouseName);
-
-        try (Connection connSource = DriverManager.getConnection(dbUrlSource, user, pass);
-             Connection connWarehouse = DriverManager.getConnection(dbUrlWarehouse, user, pass)) {
-            meshJoin(connSource, connWarehouse);
-        } catch (SQLException e) {
-            e.printStackTrace();
+        // Prompt user for what is not configured, the datasource is not needed when reading the CSV files
+        String datasourceName = config.getSourceDatabase();
+        if (!fromCsv && datasourceName == null) {
+            System.out.print("Enter name of the datasource database: ");
+            datasourceName = scanner.nextLine();
         }
-    }
-
-    //creating a customer,product buffer to create a master data and creates batches to process data
-    //each segment of transaction is loaded into the transaction map and then into a queue.
-    //a new batch is processed whn master data is not in buffer
-    
-    private static void meshJoin(Connection connSource, Connection connWarehouse) throws SQLException {
-        int offsetCustomer = 0;
-        int offsetProduct = 0;
-        int limit = PARTITION_SIZE;
 
-        
-        Map<Integer, Customer> customerBuffer = new HashMap<>();
-        Map<Integer, Product> productBuffer = new HashMap<>();
-
-        String transactionQuery = "SELECT * FROM transactions";
-        try (Statement stmtTransactions = connSource.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
-             ResultSet rsTransactions = stmtTransactions.executeQuery(transactionQuery)) {
-        	
-            // Prepare to fetch transactions in segments
-            rsTransactions.last();
-            int totalTransactions = rsTransactions.getRow(); // Get total number of transactions
-            rsTransactions.beforeFirst(); // Move cursor before the first row
-
-            while (rsTransactions.next()) {
-                do {
-                    Map<Integer, Transaction> transactionMap = readTransactionSegment(rsTransactions, limit);
-                    Queue<Transaction> transactionQueue = new LinkedList<>(transactionMap.values());
-
-                    while (!transactionQueue.isEmpty()) {
-                        Transaction transaction = transactionQueue.poll();
-
-                        // Load customer buffer if needed
-                        if (!customerBuffer.containsKey(transaction.getCustomerId())) {
-                            customerBuffer = loadCustomerPartition(connSource, offsetCustomer, limit);
-                            offsetCustomer += limit;
-                            if (offsetCustomer >= getRowCount(connSource, "customers")) offsetCustomer = 0;
-                        }
-
-                        // Load product buffer if needed
-                        if (!productBuffer.containsKey(transaction.getProductId())) {
-                            productBuffer = loadProductPartition(connSource, offsetProduct, limit);
-                            offsetProduct += limit;
-                            if (offsetProduct >= getRowCount(connSource, "products")) offsetProduct = 0;
-                        }
-
-                        // Process each transaction in batch
-                        processTransactions(transaction, customerBuffer, productBuffer, connWarehouse, connSource);
-                    }
-                    flushTransactionBatch(connWarehouse); // Execute batch after processing each segment
-                } while (rsTransactions.getRow() % limit != 0 && rsTransactions.next()); // Ensure batch processing continues
-            }
+        String datawarehouseName = config.getWarehouseDatabase();
+        if (datawarehouseName == null) {
+            System.out.print("Enter name of the datawarehouse database: ");
+            datawarehouseName = scanner.nextLine();
         }
-    }
 
-    
-    private static int getRowCount(Connection conn, String tableName) throws SQLException {
-        String countQuery = "SELECT COUNT(*) FROM " + tableName;
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(countQuery)) {
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
+        String user = config.getUser();
+        if (user == null) {
+            System.out.print("Enter database username: ");
+            user = scanner.nextLine();
         }
-        return 0;
-    }
-    //extracts a segment of transactions from the result set and iterates through
-    private static Map<Integer, Transaction> readTransactionSegment(ResultSet rsTransactions, int limit) throws SQLException {
-        Map<Integer, Transaction> transactionMap = new HashMap<>();
-        int count = 0;
 
-        do {
-            int orderId = rsTransactions.getInt("ORDER_ID");
-            Date orderDate = rsTransactions.getDate("ORDER_DATE");
-            int productId = rsTransactions.getInt("PRODUCT_ID");
-            int quantity = rsTransactions.getInt("QUANTITY");
-            int customerId = rsTransactions.getInt("CUSTOMER_ID");
-            int timeId = rsTransactions.getInt("TIME_ID");
+        String pass = config.getPassword();
+        if (pass == null) {
+            System.out.print("Enter database password: ");
+            pass = scanner.nextLine();
+        }
 
-            transactionMap.put(orderId, new Transaction(orderId, orderDate, productId, quantity, customerId, timeId));
-            count++;
-        } while (count < limit && rsTransactions.next());
+        // Construct database URLs
+        String dbUrlWarehouse = String.format(DB_URL_TEMPLATE, config.getDatabaseHost(), datawarehouseName);
+        if (config.getSink() == EtlConfig.Sink.LOAD_DATA) {
+            dbUrlWarehouse += "&allowLoadLocalInfile=true"; // Only enabled when facts are bulk loaded
+        }
 
-        return transactionMap;
-    }
-    //loads a batch of customer from source database into a map, acting as a buffer
-    private static Map<Integer, Customer> loadCustomerPartition(Connection connSource, int offset, int limit) throws SQLException {
-        Map<Integer, Customer> customerMap = new HashMap<>();
-        String customerQuery = "SELECT * FROM customers LIMIT ?, ?";
-        try (PreparedStatement pstmt = connSource.prepareStatement(customerQuery)) {
-            pstmt.setInt(1, offset);
-            pstmt.setInt(2, limit);
-            try (ResultSet rsCustomers = pstmt.executeQuery()) {
-                while (rsCustomers.next()) {
-                    int customerId = rsCustomers.getInt("CUSTOMER_ID");
-                    String customerName = rsCustomers.getString("CUSTOMER_NAME");
-                    String gender = rsCustomers.getString("GENDER");
-                    customerMap.put(customerId, new Customer(customerId, customerName, gender));
-                }
+        // Every writer gets its own warehouse connection; in database mode the reader and the join stage
+        // each get their own source connection as well. All of them come from one pool shared by the runs
+        // of the load and count their round trips in the metrics of their run
+        boolean succeeded = false;
+        try (ConnectionPool pool = new ConnectionPool(user, pass, config.getMaxConnections())) {
+            if (config.isCubeRebuild()) {
+                rebuildCubes(pool, dbUrlWarehouse);
             }
-        }
-        return customerMap;
-    }
-    //loads a batch of products from source database into a map 
-    private static Map<Integer, Product> loadProductPartition(Connection connSource, int offset, int limit) throws SQLException {
-        Map<Integer, Product> productMap = new HashMap<>();
-        String productQuery = "SELECT * FROM products LIMIT ?, ?";
-        try (PreparedStatement pstmt = connSource.prepareStatement(productQuery)) {
-            pstmt.setInt(1, offset);
-            pstmt.setInt(2, limit);
-            try (ResultSet rsProducts = pstmt.executeQuery()) {
-                while (rsProducts.next()) {
-                    int productId = rsProducts.getInt("PRODUCT_ID");
-                    String productName = rsProducts.getString("PRODUCT_NAME");
-                    double productPrice = rsProducts.getDouble("PRODUCT_PRICE");
-                    productMap.put(productId, new Product(productId, productName, productPrice));
-                }
+            if (fromCsv) {
+                succeeded = loadCsv(config, pool, dbUrlWarehouse);
+            } else {
+                String dbUrlSource = String.format(DB_URL_TEMPLATE, config.getDatabaseHost(), datasourceName);
+                succeeded = new LoadScheduler(config, pool, dbUrlSource, dbUrlWarehouse).run();
             }
+        } catch (SQLException | IOException | InterruptedException | IllegalArgumentException e) {
+            e.printStackTrace();
         }
-        return productMap;
-    }
-    
-    private static int getTimeIdFromTransaction(Transaction transaction) {
-        // Assuming TIME_ID is directly linked to the Transaction object
-        return transaction.getTimeId();
-    }
-    //before inserting the transaction records it ensures whether the datawarehouse is populated with the products,store,supplier table
-    //helper functions are included and prepares data for execution in datawarehouse
-    private static void processTransactions(Transaction transaction,
-            Map<Integer, Customer> customerPartition,
-            Map<Integer, Product> productPartition,
-            Connection connWarehouse,
-            Connection connSource) throws SQLException {
-        Customer customer = customerPartition.get(transaction.getCustomerId());
-        Product product = productPartition.get(transaction.getProductId());
-
-        if (customer != null && product != null) {
-            // Load store and supplier details
-            String productQuery = "SELECT STORE_ID, STORE_NAME, SUPPLIER_ID, SUPPLIER_NAME FROM products WHERE PRODUCT_ID = ?";
-            try (PreparedStatement pstmtProduct = connSource.prepareStatement(productQuery)) {
-                pstmtProduct.setInt(1, transaction.getProductId());
-                try (ResultSet rsProductDetails = pstmtProduct.executeQuery()) {
-                    if (rsProductDetails.next()) {
-                        int storeId = rsProductDetails.getInt("STORE_ID");
-                        String storeName = rsProductDetails.getString("STORE_NAME");
-                        int supplierId = rsProductDetails.getInt("SUPPLIER_ID");
-                        String supplierName = rsProductDetails.getString("SUPPLIER_NAME");
-
-                        // Ensure product, customer, store, and supplier exist in warehouse
-                        ensureProductExists(connWarehouse, product);
-                        ensureCustomerExists(connWarehouse, customer);
-                        ensureStoreExists(connWarehouse, storeId, storeName);
-                        ensureSupplierExists(connWarehouse, supplierId, supplierName);
-                        populateTimeTable(connSource, connWarehouse);
-
-                        // Fetch total products sold (sum of quantities) for this PRODUCT_ID
-                        double totalSales = product.getProductPrice() * transaction.getQuantity();
-                        int timeId = getTimeIdFromTransaction(transaction); // Retrieve TIME_ID
-                        addToTransactionBatch(connWarehouse, transaction, totalSales, storeId, supplierId, timeId);
-                    }
-                }
-            }
+        if (!succeeded) {
+            System.exit(1);
         }
     }
 
-    private static PreparedStatement salesInsertStatement; // Global statement to handle batch inserts
-    //adds transaction data to a batch
-	private static void addToTransactionBatch(Connection connWarehouse, Transaction transaction, double totalSales, int storeId, int supplierId, int timeId) throws SQLException {
-    if (salesInsertStatement == null) {
-        String insertQuery = """
-            INSERT INTO sales (ORDER_ID, QUANTITY, CUSTOMER_ID, PRODUCT_ID, STORE_ID, SUPPLIER_ID, TOTAL_SALES, TIME_ID) 
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-        """;
-        salesInsertStatement = connWarehouse.prepareStatement(insertQuery);
-    }
-    salesInsertStatement.setInt(1, transaction.getOrderId());
-    salesInsertStatement.setInt(2, transaction.getQuantity());
-    salesInsertStatement.setInt(3, transaction.getCustomerId());
-    salesInsertStatement.setInt(4, transaction.getProductId());
-    salesInsertStatement.setInt(5, storeId);
-    salesInsertStatement.setInt(6, supplierId);
-    salesInsertStatement.setDouble(7, totalSales);
-    salesInsertStatement.setInt(8, timeId);
-    salesInsertStatement.addBatch();
-}
-	
-	private static void flushTransactionBatch(Connection connWarehouse) throws SQLException {
-    if (salesInsertStatement != null) {
-        salesInsertStatement.executeBatch();
-        salesInsertStatement.close();
-        salesInsertStatement = null; // Reset statement after batch execution
-    }
-}
-   
-	private static void ensureProductExists(Connection connWarehouse, Product product) throws SQLException 
-    {
-        String checkProductQuery = "SELECT PRODUCT_ID FROM product WHERE PRODUCT_ID = ?";
-        try (PreparedStatement pstmtCheck = connWarehouse.prepareStatement(checkProductQuery)) 
-        {
-            pstmtCheck.setInt(1, product.getProductId());
-
-            try (ResultSet rsCheck = pstmtCheck.executeQuery()) 
-            {
-                if (!rsCheck.next()) 
-                {
-                    String insertProductQuery = "INSERT INTO product (PRODUCT_ID, PRODUCT_NAME, PRODUCT_PRICE) VALUES (?, ?, ?)";
-                    try (PreparedStatement pstmtInsert = connWarehouse.prepareStatement(insertProductQuery)) 
-                    {
-                        pstmtInsert.setInt(1, product.getProductId());
-                        pstmtInsert.setString(2, product.getProductName());
-                        pstmtInsert.setDouble(3, product.getProductPrice());
-                        pstmtInsert.executeUpdate();
-                    }
-                }
-            }
+    //once before all runs of the load, whose writers then keep the summary tables up to date
+    private static void rebuildCubes(ConnectionPool pool, String dbUrlWarehouse) throws SQLException, InterruptedException {
+        long start = System.nanoTime();
+        try (Connection connWarehouse = pool.borrow(dbUrlWarehouse)) {
+            SalesCubes.rebuild(connWarehouse);
         }
+        System.out.printf("Rebuilt the summary tables from sales in %d ms%n", (System.nanoTime() - start) / 1_000_000);
     }
 
-    private static void ensureCustomerExists(Connection connWarehouse, Customer customer) throws SQLException 
-    {
-        String checkCustomerQuery = "SELECT CUSTOMER_ID FROM customer WHERE CUSTOMER_ID = ?";
-        try (PreparedStatement pstmtCheck = connWarehouse.prepareStatement(checkCustomerQuery)) 
-        {
-            pstmtCheck.setInt(1, customer.getCustomerId());
-
-            try (ResultSet rsCheck = pstmtCheck.executeQuery()) 
-            {
-                if (!rsCheck.next()) 
-                {
-                    String insertCustomerQuery = "INSERT INTO customer (CUSTOMER_ID, CUSTOMER_NAME, GENDER) VALUES (?, ?, ?)";
-                    try (PreparedStatement pstmtInsert = connWarehouse.prepareStatement(insertCustomerQuery)) 
-                    {
-                        pstmtInsert.setInt(1, customer.getCustomerId());
-                        pstmtInsert.setString(2, customer.getCustomerName());
-                        pstmtInsert.setString(3, customer.getGender());
-                        pstmtInsert.executeUpdate();
-                    }
-                }
+    //the CSV files are loaded in a single run, they cannot be split
+    private static boolean loadCsv(EtlConfig config, ConnectionPool pool, String dbUrlWarehouse)
+            throws SQLException, IOException, InterruptedException {
+        EtlMetrics metrics = new EtlMetrics();
+        List<Connection> warehouseConnections = new ArrayList<>();
+        try {
+            for (int i = 0; i < config.getParallelism(); i++) {
+                warehouseConnections.add(MeteredConnection.wrap(pool.borrow(dbUrlWarehouse), metrics));
             }
-        }
-    }
-
-    private static void ensureStoreExists(Connection connWarehouse, int storeId, String storeName) throws SQLException 
-    {
-        String checkStoreQuery = "SELECT STORE_ID FROM store WHERE STORE_ID = ?";
-        try (PreparedStatement pstmtCheck = connWarehouse.prepareStatement(checkStoreQuery)) 
-        {
-            pstmtCheck.setInt(1, storeId);
-
-            try (ResultSet rsCheck = pstmtCheck.executeQuery()) 
-            {
-                if (!rsCheck.next()) 
-                {
-                    String insertStoreQuery = "INSERT INTO store (STORE_ID, STORE_NAME) VALUES (?, ?)";
-                    try (PreparedStatement pstmtInsert = connWarehouse.prepareStatement(insertStoreQuery)) 
-                    {
-                        pstmtInsert.setInt(1, storeId);
-                        pstmtInsert.setString(2, storeName);
-                        pstmtInsert.executeUpdate();
-                    }
-                }
+            Path csvDirectory = config.getCsvDirectory();
+            try (CsvTransactionStream transactions = new CsvTransactionStream(csvDirectory.resolve("transactions.csv"), config.getSegmentSize());
+                 CsvMasterDataSource masterData = new CsvMasterDataSource(csvDirectory.resolve("customers.csv"),
+                         csvDirectory.resolve("products.csv"))) {
+                meshJoin(transactions, masterData, warehouseConnections, Integer.MIN_VALUE, config, metrics);
             }
-        }
-    }
-
-    private static void ensureSupplierExists(Connection connWarehouse, int supplierId, String supplierName) throws SQLException 
-
-    {
-        String checkSupplierQuery = "SELECT SUPPLIER_ID FROM supplier WHERE SUPPLIER_ID = ?";
-        try (PreparedStatement pstmtCheck = connWarehouse.prepareStatement(checkSupplierQuery)) 
-        {
-            pstmtCheck.setInt(1, supplierId);
-
-            try (ResultSet rsCheck = pstmtCheck.executeQuery()) 
-            {
-                if (!rsCheck.next()) 
-                {
-                    String insertSupplierQuery = "INSERT INTO supplier (SUPPLIER_ID, SUPPLIER_NAME) VALUES (?, ?)";
-                    try (PreparedStatement pstmtInsert = connWarehouse.prepareStatement(insertSupplierQuery)) 
-                    {
-                        pstmtInsert.setInt(1, supplierId);
-                        pstmtInsert.setString(2, supplierName);
-                        pstmtInsert.executeUpdate();
-                    }
+            return true;
+        } finally {
+            for (Connection connWarehouse : warehouseConnections) {
+                try {
+                    connWarehouse.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
                 }
             }
         }
     }
-    
-    private static void populateTimeTable(Connection connSource, Connection connWarehouse) throws SQLException {
-        String insertTimeQuery = """
-            INSERT INTO datawarehouse.timee (TIME_ID, ORDER_DATE, DAY, WEEK, MONTH, YEAR, QUARTER)
-            SELECT DISTINCT 
-                t.TIME_ID,
-                t.ORDER_DATE,
-                DAY(t.ORDER_DATE) AS DAY,
-                WEEK(t.ORDER_DATE, 1) AS WEEK, -- ISO week numbering, Monday as the first day
-                MONTH(t.ORDER_DATE) AS MONTH,
-                YEAR(t.ORDER_DATE) AS YEAR,
-                CASE 
-                    WHEN MONTH(t.ORDER_DATE) BETWEEN 1 AND 3 THEN 1
-                    WHEN MONTH(t.ORDER_DATE) BETWEEN 4 AND 6 THEN 2
-                    WHEN MONTH(t.ORDER_DATE) BETWEEN 7 AND 9 THEN 3
-                    WHEN MONTH(t.ORDER_DATE) BETWEEN 10 AND 12 THEN 4
-                END AS QUARTER
-            FROM datasource.transactions t
-            WHERE t.ORDER_DATE IS NOT NULL
-              AND t.TIME_ID NOT IN (SELECT TIME_ID FROM datawarehouse.timee)
-        """;
 
-        try (PreparedStatement pstmt = connWarehouse.prepareStatement(insertTimeQuery)) {
-            int rowsInserted = pstmt.executeUpdate();
-//            System.out.println(rowsInserted + " rows inserted into timee table.");
+    //the transactions are streamed in segments of --segment-size into the MESHJOIN engine, which
+    //scans customers and products cyclically in partitions planned by JoinSizing from --join-memory;
+    //reading, joining and loading run as pipelined stages.
+    //the join window is split into one shard per warehouse connection and each shard has its own writer.
+    //the metrics are reported while the load runs and once more when it ends, followed by how many
+    //transactions were matched and how many were spilled to the unmatched file.
+    //with the database source every writer keeps its checkpoint row from startOrderId on, and unless
+    //--cubes=off every writer adds its facts to the summary tables as it commits them, each run of a
+    //split load to stripes of its own
+    static void meshJoin(MeshJoinEngine.TransactionStream transactions, MasterDataSource masterData,
+            List<Connection> warehouseConnections, int startOrderId, EtlConfig config, EtlMetrics metrics)
+            throws SQLException, IOException, InterruptedException {
+        JoinSizing sizing = JoinSizing.plan(masterData, config);
+        System.out.println("Using a " + sizing);
+        SalesCubes cubes = config.isCubes() ? SalesCubes.begin(warehouseConnections.get(0))
+                : SalesCubes.disabled();
+
+        List<EtlPipeline.BatchWriter> writers = new ArrayList<>();
+        for (int i = 0; i < warehouseConnections.size(); i++) {
+            Connection connWarehouse = warehouseConnections.get(i);
+            LoadCheckpoint checkpoint = config.getSource() == EtlConfig.Source.DATABASE
+                    ? LoadCheckpoint.open(connWarehouse, config.getLoadName(), i, startOrderId)
+                    : LoadCheckpoint.disabled();
+            writers.add(new WarehouseWriter(connWarehouse, config, checkpoint, cubes.stripe(connWarehouse, config.getRunIndex() * warehouseConnections.size() + i), metrics));
         }
-    }
-
-    private static void insertSales(Connection connWarehouse, Transaction transaction, double totalSales, int storeId, int supplierId, int timeId) throws SQLException {
-        String insertQuery = """
-            INSERT INTO sales (ORDER_ID, QUANTITY, CUSTOMER_ID, PRODUCT_ID, STORE_ID, SUPPLIER_ID, TOTAL_SALES, TIME_ID) 
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-        """;
-        try (PreparedStatement pstmtInsert = connWarehouse.prepareStatement(insertQuery)) {
-            pstmtInsert.setInt(1, transaction.getOrderId());
-            pstmtInsert.setInt(2, transaction.getQuantity());
-            pstmtInsert.setInt(3, transaction.getCustomerId());
-            pstmtInsert.setInt(4, transaction.getProductId());
-            pstmtInsert.setInt(5, storeId);
-            pstmtInsert.setInt(6, supplierId);
-            pstmtInsert.setDouble(7, totalSales);
-            pstmtInsert.setInt(8, timeId); // Include TIME_ID as it might be used for reporting or tracking, even if not unique
-            pstmtInsert.executeUpdate();
+        try (UnmatchedTransactionFile unmatched = new UnmatchedTransactionFile(config.getUnmatchedFile(),
+                startOrderId != Integer.MIN_VALUE)) {
+            EtlPipeline pipeline = new EtlPipeline(transactions,
+                    sinks -> new MeshJoinEngine(masterData, sizing, sinks, unmatched, config, metrics),
+                    writers, metrics);
+            metrics.start(config.getMetricsInterval(), config.getMetricsFile());
+            try {
+                pipeline.run();
+            } finally {
+                metrics.stop();
+            }
+            System.out.printf("%d transactions matched, %d unmatched%s%n", metrics.getRowsJoined(), unmatched.getRows(),
+                    unmatched.getRows() > 0 ? " (written to " + unmatched.getPath() + ")" : "");
         }
     }
 
 }
-
-// Supporting classes
-class Transaction 
-{
-    private final int orderId;
-    private final Date orderDate; // java.sql.Date
-    private final int productId;
-    private final int quantity;
-    private final int customerId;
-    private final int timeId; // Added TIME_ID
-
-    public Transaction(int orderId, Date orderDate, int productId, int quantity, int customerId, int timeId) 
-{
-        this.orderId = orderId;
-        this.orderDate = orderDate;
-        this.productId = productId;
-        this.quantity = quantity;
-        this.customerId = customerId;
-        this.timeId = timeId;
-}
-
-    public int getOrderId() { return orderId; }
-    public Date getOrderDate() { return orderDate; }
-    public int getProductId() { return productId; }
-    public int getQuantity() { return quantity; }
-    public int getCustomerId() { return customerId; }
-    public int getTimeId() { return timeId; } // Added getter for TIME_ID
-}
-
-
-class Customer 
-{
-    private final int customerId;
-    private final String customerName;
-    private final String gender;
-
-    public Customer(int customerId, String customerName, String gender) 
-    {
-        this.customerId = customerId;
-        this.customerName = customerName;
-        this.gender = gender;
-    }
-
-    public int getCustomerId() 
-    { 
-    	return customerId; 
-    }
-    public String getCustomerName() 
-    { 
-    	return customerName; 
-    }
-    public String getGender() 
-    { 
-    	return gender; 
-    }
-}
-class Product 
-{
-    private final int productId;
-    private final String productName;
-    private final double productPrice;
-
-    public Product(int productId, String productName, double productPrice) {
-        this.productId = productId;
-        this.productName = productName;
-        this.productPrice = productPrice;
-    }
-
-    public int getProductId() {
-        return productId;
-    }
-
-    public String getProductName() {
-        return productName;
-    }
-
-    public double getProductPrice() {
-        return productPrice; // Ensure no non-visible characters here
-        }
-
-
-}
\ No newline at end of file
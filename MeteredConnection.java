@@ -0,0 +1,50 @@
+package com.meshjoin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+//wraps a JDBC connection so that every statement execution, commit and rollback on it is counted
+//as a round trip in the metrics. statements created on the wrapper are wrapped as well; everything
+//else, unwrap() included, goes straight to the driver
+final class MeteredConnection implements InvocationHandler {
+
+    private final Object target;
+    private final EtlMetrics metrics;
+
+    private MeteredConnection(Object target, EtlMetrics metrics) {
+        this.target = target;
+        this.metrics = metrics;
+    }
+
+    static Connection wrap(Connection connection, EtlMetrics metrics) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new MeteredConnection(connection, metrics));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.startsWith("execute") || name.equals("commit") || name.equals("rollback")) {
+            metrics.addJdbcRoundTrip();
+        }
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+        if (result instanceof Statement && (name.equals("createStatement") || name.startsWith("prepare"))) {
+            Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                    : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                    new MeteredConnection(result, metrics));
+        }
+        return result;
+    }
+}
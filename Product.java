@@ -0,0 +1,53 @@
+package com.meshjoin;
+
+class Product 
+{
+    private final int productId;
+    private final String productName;
+    private final double productPrice;
+    private final int storeId;
+    private final String storeName;
+    private final int supplierId;
+    private final String supplierName;
+
+    public Product(int productId, String productName, double productPrice,
+            int storeId, String storeName, int supplierId, String supplierName) {
+        this.productId = productId;
+        this.productName = productName;
+        this.productPrice = productPrice;
+        this.storeId = storeId;
+        this.storeName = storeName;
+        this.supplierId = supplierId;
+        this.supplierName = supplierName;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public double getProductPrice() {
+        return productPrice; // Ensure no non-visible characters here
+        }
+
+    public int getStoreId() {
+        return storeId;
+    }
+
+    public String getStoreName() {
+        return storeName;
+    }
+
+    public int getSupplierId() {
+        return supplierId;
+    }
+
+    public String getSupplierName() {
+        return supplierName;
+    }
+
+
+}
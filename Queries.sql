@@ -3,24 +3,20 @@ use datawarehouse;
 -- query number1: Find the top 5 products that generated the highest revenue, separated by weekday and weekend 
 -- sales, with results grouped by month for a specified year. 
 
+-- reads the sales_product_month summary the ETL keeps, instead of scanning sales
 SELECT 
-    t.MONTH,
-    (CASE 
-        WHEN DAYOFWEEK(t.ORDER_DATE) IN (1, 7) THEN 'Weekend'
-        ELSE 'Weekday'
-    END) AS day_type,
+    c.MONTH,
+    c.DAY_TYPE AS day_type,
     p.product_name,
-    SUM(s.total_sales) AS total_revenue
+    SUM(c.TOTAL_SALES) AS total_revenue
 FROM 
-    sales s
+    sales_product_month c
 JOIN
-    product p ON s.PRODUCT_ID = p.PRODUCT_ID
-JOIN 
-	timeE t ON s.TIME_ID=t.TIME_ID
+    product p ON c.PRODUCT_ID = p.PRODUCT_ID
 WHERE 
-    t.YEAR= '2019'
+    c.YEAR = 2019
 GROUP BY 
-    t.MONTH,
+    c.MONTH,
     day_type,
     p.product_name
 ORDER BY 
@@ -29,43 +25,37 @@ LIMIT 5;
 
 
 -- query number2: Calculate the revenue growth rate for each store on a quarterly basis for 2017. -- 
-SELECT STORE_ID, t.QUARTER AS Quarters, t.YEAR AS Year, SUM(TOTAL_SALES) AS TotalRevenue
-FROM Sales s
-JOIN
-	timee t ON t.TIME_ID=s.TIME_ID
-WHERE YEAR(ORDER_DATE) = 2019
+-- reads the sales_store_quarter summary
+SELECT STORE_ID, QUARTER AS Quarters, YEAR AS Year, SUM(TOTAL_SALES) AS TotalRevenue
+FROM sales_store_quarter
+WHERE YEAR = 2019
 GROUP BY STORE_ID, Year, Quarters;
 
 -- query number3: For each store, show the total sales contribution of each supplier broken down by product 
 -- category. The output should group results by store, then supplier, and then product category 
 -- under each supplier.
-SELECT st.STORE_NAME, su.SUPPLIER_NAME, pr.PRODUCT_NAME, SUM(s.TOTAL_SALES) AS TotalSalesContribution
-FROM Sales s
+-- reads the sales_store_supplier_product summary
+SELECT st.STORE_NAME, su.SUPPLIER_NAME, pr.PRODUCT_NAME, SUM(c.TOTAL_SALES) AS TotalSalesContribution
+FROM sales_store_supplier_product c
 JOIN Product pr
-    ON s.PRODUCT_ID = pr.PRODUCT_ID
+    ON c.PRODUCT_ID = pr.PRODUCT_ID
 JOIN Supplier su
-    ON s.SUPPLIER_ID = su.SUPPLIER_ID
+    ON c.SUPPLIER_ID = su.SUPPLIER_ID
 JOIN Store st
-    ON s.STORE_ID = st.STORE_ID
+    ON c.STORE_ID = st.STORE_ID
 GROUP BY  st.STORE_NAME, su.SUPPLIER_NAME,pr.PRODUCT_NAME;
 
 -- query number4: Present total sales for each product, drilled down by seasonal periods (Spring, Summer, Fall, 
 -- Winter) and further by region. This can help understand product performance in different regions 
 -- across seasonal periods.
+-- reads the sales_product_season summary
 SELECT p.product_name,
-(CASE 
-	WHEN t.MONTH IN (3, 4, 5) THEN 'Spring'
-	WHEN t.MONTH IN (6, 7, 8) THEN 'Summer'
-	WHEN t.MONTH IN (9, 10, 11) THEN 'Fall'
-	ELSE 'Winter'
-    END) as season,
-    SUM(s.TOTAL_SALES) as total_sales
+    c.SEASON as season,
+    SUM(c.TOTAL_SALES) as total_sales
 FROM 
-    sales s
-JOIN
-	timee t ON t.TIME_ID=s.TIME_ID
+    sales_product_season c
 JOIN 
-    product p ON s.PRODUCT_ID = p.PRODUCT_ID
+    product p ON c.PRODUCT_ID = p.PRODUCT_ID
 GROUP BY 
     p.product_name,season;
 
@@ -86,22 +76,21 @@ SELECT
         ELSE ((CURRENT_REVENUE - PREVIOUS_REVENUE) / PREVIOUS_REVENUE) * 100
     END AS PERCENTAGE_CHANGE
 FROM (
+    -- reads the sales_store_supplier_month summary
     SELECT
-        t.year,
-        t.month,
-        s.STORE_ID,
-        s.SUPPLIER_ID,
-        SUM(s.TOTAL_SALES) AS current_revenue,
-        LAG(SUM(s.TOTAL_SALES), 1) OVER (PARTITION BY s.STORE_ID, s.SUPPLIER_ID ORDER BY t.year, t.month) AS previous_revenue
+        YEAR,
+        MONTH,
+        STORE_ID,
+        SUPPLIER_ID,
+        SUM(TOTAL_SALES) AS current_revenue,
+        LAG(SUM(TOTAL_SALES), 1) OVER (PARTITION BY STORE_ID, SUPPLIER_ID ORDER BY YEAR, MONTH) AS previous_revenue
     FROM
-        sales s
-    JOIN
-        timee t ON s.TIME_ID = t.TIME_ID
+        sales_store_supplier_month
     GROUP BY
-        t.year,
-        t.month,
-        s.STORE_ID,
-        s.SUPPLIER_ID
+        YEAR,
+        MONTH,
+        STORE_ID,
+        SUPPLIER_ID
 ) AS RevenueData
 ORDER BY
     STORE_ID, SUPPLIER_ID, YEAR, MONTH;
@@ -142,24 +131,21 @@ ORDER BY
 -- query number8: For each product, calculate the total revenue and quantity sold in the first and second halves of 
 -- the year, along with yearly totals. This split-by-time-period analysis can reveal changes in product 
 -- popularity or demand over the year.
+-- reads the sales_product_month summary
 SELECT
-    p.PRODUCT_ID, t.YEAR,
-    SUM(CASE WHEN t.MONTH BETWEEN 1 AND 6 THEN s.TOTAL_SALES ELSE 0 END) AS First_Half_Revenue,
-    SUM(CASE WHEN t.MONTH BETWEEN 7 AND 12 THEN s.TOTAL_SALES ELSE 0 END) AS Second_Half_Revenue,
-    SUM(s.TOTAL_SALES) AS Total_Revenue,
-    SUM(CASE WHEN t.MONTH BETWEEN 1 AND 6 THEN s.QUANTITY ELSE 0 END) AS First_Half_Quantity,
-    SUM(CASE WHEN t.MONTH BETWEEN 7 AND 12 THEN s.QUANTITY ELSE 0 END) AS Second_Half_Quantity,
-    SUM(s.QUANTITY) AS Total_Quantity
+    c.PRODUCT_ID, c.YEAR,
+    SUM(CASE WHEN c.MONTH BETWEEN 1 AND 6 THEN c.TOTAL_SALES ELSE 0 END) AS First_Half_Revenue,
+    SUM(CASE WHEN c.MONTH BETWEEN 7 AND 12 THEN c.TOTAL_SALES ELSE 0 END) AS Second_Half_Revenue,
+    SUM(c.TOTAL_SALES) AS Total_Revenue,
+    SUM(CASE WHEN c.MONTH BETWEEN 1 AND 6 THEN c.QUANTITY ELSE 0 END) AS First_Half_Quantity,
+    SUM(CASE WHEN c.MONTH BETWEEN 7 AND 12 THEN c.QUANTITY ELSE 0 END) AS Second_Half_Quantity,
+    SUM(c.QUANTITY) AS Total_Quantity
 FROM
-    sales s
-JOIN
-    timee t ON s.TIME_ID = t.TIME_ID
-JOIN
-    product p ON s.PRODUCT_ID = p.PRODUCT_ID
+    sales_product_month c
 GROUP BY 
-	p.PRODUCT_ID, t.YEAR
+	c.PRODUCT_ID, c.YEAR
 ORDER BY
-    p.PRODUCT_ID, t.YEAR;
+    c.PRODUCT_ID, c.YEAR;
  
  -- query number9: Calculate daily average sales for each product and flag days where the sales exceed twice the daily 
 -- average by product as potential outliers or spikes.
@@ -197,25 +183,24 @@ ORDER BY
 -- regional and store-specific trends across quarters, significantly improving query performance for 
 -- regular sales analysis.
     
+-- the view reads the sales_store_quarter summary
 CREATE VIEW REGION_STORE_QUARTERLY_SALES AS
 SELECT
     st.store_name,
-    t.year ,
-    t.quarter,
-    SUM(s.total_sales) AS total_sales
+    c.year ,
+    c.quarter,
+    SUM(c.total_sales) AS total_sales
 FROM
-    sales s
-JOIN
-    store st ON s.store_id = st.store_id
+    sales_store_quarter c
 JOIN
-    timee t ON s.time_id = t.time_id
+    store st ON c.store_id = st.store_id
 GROUP BY
     st.store_name,
-    t.year,
-    t.quarter
+    c.year,
+    c.quarter
 ORDER BY
      st.store_name,
-    t.year,
-    t.quarter;
+    c.year,
+    c.quarter;
 
 
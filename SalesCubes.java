@@ -0,0 +1,475 @@
+package com.meshjoin;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+//summary tables of the sales facts, aggregated while they are loaded, so the reports in Queries.sql
+//read a few hundred rows instead of scanning sales joined to timee. the calendar attributes come from
+//the fact's ORDER_DATE.
+//the accumulators are striped by warehouse writer and so are the summary rows, with a STRIPE column in
+//their key that the reports sum over: the writers never contend, neither in memory nor on row locks.
+//a stripe is added to its summary rows right before the commit of the facts it covers, in the same
+//transaction like the checkpoint, so the summaries never disagree with the committed facts.
+//a fact that overwrites one already in sales replaces it in the summaries as well: before the sink
+//writes a batch the stripe reads the facts in sales with the batch's ORDER_IDs and takes them out again
+//once the batch is executed, so a resumed load that writes facts again unchanged adds nothing and a
+//replay that changes a fact moves it. the lookup runs in the writer's transaction, so it also sees the
+//writer's own uncommitted facts, and it only ever holds one batch of facts.
+//rebuild recomputes the summary tables from sales, for the facts loaded with --cubes=off
+class SalesCubes {
+
+    enum Cube {
+        //query 1 and 8: revenue by product and month, split into weekdays and weekends
+        PRODUCT_MONTH("sales_product_month", "PRODUCT_ID INT, YEAR INT, MONTH INT, DAY_TYPE VARCHAR(7)",
+                "PRODUCT_ID, YEAR(ORDER_DATE), MONTH(ORDER_DATE),"
+                        + " CASE WHEN DAYOFWEEK(ORDER_DATE) IN (1, 7) THEN 'Weekend' ELSE 'Weekday' END"),
+        //query 2 and 10: store revenue by quarter
+        STORE_QUARTER("sales_store_quarter", "STORE_ID INT, YEAR INT, QUARTER INT",
+                "STORE_ID, YEAR(ORDER_DATE), QUARTER(ORDER_DATE)"),
+        //query 3: contribution of every supplier and product to a store
+        STORE_SUPPLIER_PRODUCT("sales_store_supplier_product", "STORE_ID INT, SUPPLIER_ID INT, PRODUCT_ID INT",
+                "STORE_ID, SUPPLIER_ID, PRODUCT_ID"),
+        //query 4: product sales by season
+        PRODUCT_SEASON("sales_product_season", "PRODUCT_ID INT, SEASON VARCHAR(6)",
+                "PRODUCT_ID, CASE WHEN MONTH(ORDER_DATE) IN (3, 4, 5) THEN 'Spring'"
+                        + " WHEN MONTH(ORDER_DATE) IN (6, 7, 8) THEN 'Summer'"
+                        + " WHEN MONTH(ORDER_DATE) IN (9, 10, 11) THEN 'Fall' ELSE 'Winter' END"),
+        //query 5: monthly revenue of every store and supplier pair
+        STORE_SUPPLIER_MONTH("sales_store_supplier_month", "STORE_ID INT, SUPPLIER_ID INT, YEAR INT, MONTH INT",
+                "STORE_ID, SUPPLIER_ID, YEAR(ORDER_DATE), MONTH(ORDER_DATE)");
+
+        private final String table;
+        private final String keyColumns;
+        //the key columns computed from a row of sales, for rebuild
+        private final String keyExpressions;
+        private final String keyNames;
+        private final int keyCount;
+
+        Cube(String table, String keyColumns, String keyExpressions) {
+            this.table = table;
+            this.keyColumns = keyColumns;
+            this.keyExpressions = keyExpressions;
+            String[] columns = keyColumns.split(", ");
+            StringBuilder names = new StringBuilder();
+            for (String column : columns) {
+                names.append(names.length() == 0 ? "" : ", ").append(column, 0, column.indexOf(' '));
+            }
+            this.keyNames = names.toString();
+            this.keyCount = columns.length;
+        }
+
+        String getTable() {
+            return table;
+        }
+
+        private String createTable() {
+            return "CREATE TABLE IF NOT EXISTS " + table + " (" + keyColumns
+                    + ", STRIPE INT, TOTAL_SALES DECIMAL(14,2), QUANTITY BIGINT, SALES_COUNT BIGINT, PRIMARY KEY ("
+                    + keyNames + ", STRIPE))";
+        }
+
+        private String upsert() {
+            return "INSERT INTO " + table + " (" + keyNames + ", STRIPE, TOTAL_SALES, QUANTITY, SALES_COUNT) VALUES ("
+                    + "?, ".repeat(keyCount) + "?, ?, ?, ?) ON DUPLICATE KEY UPDATE"
+                    + " TOTAL_SALES = TOTAL_SALES + VALUES(TOTAL_SALES), QUANTITY = QUANTITY + VALUES(QUANTITY),"
+                    + " SALES_COUNT = SALES_COUNT + VALUES(SALES_COUNT)";
+        }
+
+        //the same statements are in datawarehouse.sql; facts without an ORDER_DATE only count in the
+        //cubes that have no calendar attribute
+        private String rebuild() {
+            return "INSERT INTO " + table + " (" + keyNames + ", STRIPE, TOTAL_SALES, QUANTITY, SALES_COUNT)"
+                    + " SELECT " + keyExpressions + ", 0, SUM(TOTAL_SALES), SUM(QUANTITY), COUNT(*) FROM sales"
+                    + (keyExpressions.contains("ORDER_DATE") ? " WHERE ORDER_DATE IS NOT NULL" : "")
+                    + " GROUP BY " + keyExpressions;
+        }
+    }
+
+    private static final Cube[] CUBES = Cube.values();
+    private static final String[] DAY_TYPES = { "Weekday", "Weekend" };
+    //indexed by month % 12 / 3, the same seasons as query 4
+    private static final String[] SEASONS = { "Winter", "Spring", "Summer", "Fall" };
+    //ORDER_DATE of facts without one; they only count in the cubes that have no calendar attribute
+    private static final int NO_DATE = TransactionChunk.NO_DATE;
+    //ORDER_IDs looked up in sales per query; a shorter rest repeats its last ORDER_ID, so one statement serves all
+    private static final int LOOKUP_ROWS = 500;
+    private static final String LOADED_QUERY = "SELECT ORDER_ID, PRODUCT_ID, STORE_ID, SUPPLIER_ID, ORDER_DATE,"
+            + " QUANTITY, TOTAL_SALES FROM sales WHERE ORDER_ID IN (" + "?, ".repeat(LOOKUP_ROWS - 1) + "?)";
+
+    private static final SalesCubes DISABLED = new SalesCubes(false);
+
+    private final boolean enabled;
+
+    private SalesCubes(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    //creates the summary tables that are missing
+    static SalesCubes begin(Connection connWarehouse) throws SQLException {
+        try (Statement stmt = connWarehouse.createStatement()) {
+            for (Cube cube : CUBES) {
+                stmt.execute(cube.createTable());
+            }
+        }
+        return new SalesCubes(true);
+    }
+
+    //replaces the contents of the summary tables with the sums over sales, in one transaction
+    static void rebuild(Connection connWarehouse) throws SQLException {
+        begin(connWarehouse);
+        boolean autoCommit = connWarehouse.getAutoCommit();
+        connWarehouse.setAutoCommit(false);
+        try (Statement stmt = connWarehouse.createStatement()) {
+            for (Cube cube : CUBES) {
+                stmt.executeUpdate("DELETE FROM " + cube.table);
+                stmt.executeUpdate(cube.rebuild());
+            }
+            connWarehouse.commit();
+        } catch (SQLException e) {
+            connWarehouse.rollback();
+            throw e;
+        } finally {
+            connWarehouse.setAutoCommit(autoCommit);
+        }
+    }
+
+    //for loads run with --cubes=off and for the benchmarks
+    static SalesCubes disabled() {
+        return DISABLED;
+    }
+
+    //the stripe of one writer, adding to its rows of the summary tables over that writer's connection
+    Stripe stripe(Connection connWarehouse, int stripe) throws SQLException {
+        if (!enabled) {
+            return new Stripe(null, null, 0);
+        }
+        PreparedStatement[] upserts = new PreparedStatement[CUBES.length];
+        PreparedStatement loadedQuery = null;
+        try {
+            for (Cube cube : CUBES) {
+                upserts[cube.ordinal()] = connWarehouse.prepareStatement(cube.upsert());
+            }
+            loadedQuery = connWarehouse.prepareStatement(LOADED_QUERY);
+        } catch (SQLException e) {
+            for (PreparedStatement upsert : upserts) {
+                if (upsert != null) {
+                    upsert.close();
+                }
+            }
+            throw e;
+        }
+        return new Stripe(upserts, loadedQuery, stripe);
+    }
+
+    //the aggregates of the facts one writer loaded since its last commit. like the checkpoint it follows
+    //the sink: facts are added as they are batched, the ones they overwrite are read from sales right
+    //before the sink executes them, both are folded into the cubes once it has and written right before the commit
+    static final class Stripe {
+
+        //null when the cubes are disabled
+        private final PreparedStatement[] upserts;
+        private final PreparedStatement loadedQuery;
+        private final int stripe;
+        private final CubeTable[] tables = new CubeTable[CUBES.length];
+        //facts added since the sink last executed its batch
+        private final Facts pending = new Facts();
+        //the facts in sales the pending ones overwrite, found by beforeExecute
+        private final Facts replaced = new Facts();
+
+        private Stripe(PreparedStatement[] upserts, PreparedStatement loadedQuery, int stripe) {
+            this.upserts = upserts;
+            this.loadedQuery = loadedQuery;
+            this.stripe = stripe;
+            for (int i = 0; i < tables.length; i++) {
+                tables[i] = new CubeTable();
+            }
+        }
+
+        void add(Transaction transaction, double totalSales, int storeId, int supplierId) {
+            if (upserts == null) {
+                return;
+            }
+            Date orderDate = transaction.getOrderDate();
+            //rounded like TOTAL_SALES DECIMAL(10,2) stores it
+            pending.add(transaction.getOrderId(), transaction.getProductId(), storeId, supplierId,
+                    orderDate == null ? NO_DATE : (int) orderDate.toLocalDate().toEpochDay(),
+                    transaction.getQuantity(), Math.round(totalSales * 100));
+        }
+
+        //reads the facts in sales that the ones added since the last batch overwrite, to be called right
+        //before the sink executes them
+        void beforeExecute() throws SQLException {
+            replaced.clear();
+            for (int first = 0; first < pending.size; first += LOOKUP_ROWS) {
+                for (int i = 0; i < LOOKUP_ROWS; i++) {
+                    loadedQuery.setInt(i + 1, pending.orderId[Math.min(first + i, pending.size - 1)]);
+                }
+                try (ResultSet rs = loadedQuery.executeQuery()) {
+                    while (rs.next()) {
+                        Date orderDate = rs.getDate(5);
+                        replaced.add(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4),
+                                orderDate == null ? NO_DATE : (int) orderDate.toLocalDate().toEpochDay(),
+                                rs.getInt(6), rs.getBigDecimal(7).movePointRight(2).longValue());
+                    }
+                }
+            }
+        }
+
+        //the facts added so far have been executed on the connection and have overwritten the replaced ones
+        void executed() {
+            fold(pending, 1);
+            fold(replaced, -1);
+            pending.clear();
+            replaced.clear();
+        }
+
+        private void fold(Facts facts, int sign) {
+            for (int row = 0; row < facts.size; row++) {
+                int product = facts.productId[row];
+                int store = facts.storeId[row];
+                int supplier = facts.supplierId[row];
+                long amount = sign * facts.cents[row];
+                int units = sign * facts.quantity[row];
+                tables[Cube.STORE_SUPPLIER_PRODUCT.ordinal()].add(store, supplier, product, amount, units, sign);
+                if (facts.epochDay[row] == NO_DATE) {
+                    continue;
+                }
+                LocalDate date = LocalDate.ofEpochDay(facts.epochDay[row]);
+                int month = date.getMonthValue();
+                int yearMonth = date.getYear() * 12 + month - 1;
+                DayOfWeek day = date.getDayOfWeek();
+                int dayType = day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY ? 1 : 0;
+                tables[Cube.PRODUCT_MONTH.ordinal()].add(product, yearMonth, dayType, amount, units, sign);
+                tables[Cube.STORE_QUARTER.ordinal()].add(store, date.getYear(), TimeDimensionBuilder.quarter(date),
+                        amount, units, sign);
+                tables[Cube.PRODUCT_SEASON.ordinal()].add(product, month % 12 / 3, 0, amount, units, sign);
+                tables[Cube.STORE_SUPPLIER_MONTH.ordinal()].add(store, supplier, yearMonth, amount, units, sign);
+            }
+        }
+
+        //adds the executed facts to the summary tables, to be called right before the commit that makes them durable
+        void beforeCommit() throws SQLException {
+            if (upserts == null) {
+                return;
+            }
+            for (Cube cube : CUBES) {
+                CubeTable table = tables[cube.ordinal()];
+                if (table.size() == 0) {
+                    continue;
+                }
+                PreparedStatement upsert = upserts[cube.ordinal()];
+                for (int slot = 0; slot < table.capacity(); slot++) {
+                    //a fact written again unchanged leaves its key with nothing to add
+                    if (!table.used[slot] || table.count[slot] == 0 && table.cents[slot] == 0 && table.quantity[slot] == 0) {
+                        continue;
+                    }
+                    int parameter = bindKey(upsert, cube, table.key1[slot], table.key2[slot], table.key3[slot]);
+                    upsert.setInt(parameter, stripe);
+                    upsert.setBigDecimal(parameter + 1, BigDecimal.valueOf(table.cents[slot], 2));
+                    upsert.setLong(parameter + 2, table.quantity[slot]);
+                    upsert.setLong(parameter + 3, table.count[slot]);
+                    upsert.addBatch();
+                }
+                upsert.executeBatch();
+                table.clear();
+            }
+        }
+
+        void close() throws SQLException {
+            if (upserts == null) {
+                return;
+            }
+            SQLException failure = null;
+            for (PreparedStatement upsert : upserts) {
+                try {
+                    upsert.close();
+                } catch (SQLException e) {
+                    failure = e;
+                }
+            }
+            try {
+                loadedQuery.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        //binds the key columns of the cube and returns the index of the first measure
+        private static int bindKey(PreparedStatement upsert, Cube cube, int key1, int key2, int key3) throws SQLException {
+            switch (cube) {
+                case PRODUCT_MONTH -> {
+                    upsert.setInt(1, key1);
+                    upsert.setInt(2, key2 / 12);
+                    upsert.setInt(3, key2 % 12 + 1);
+                    upsert.setString(4, DAY_TYPES[key3]);
+                }
+                case STORE_QUARTER, STORE_SUPPLIER_PRODUCT -> {
+                    upsert.setInt(1, key1);
+                    upsert.setInt(2, key2);
+                    upsert.setInt(3, key3);
+                }
+                case PRODUCT_SEASON -> {
+                    upsert.setInt(1, key1);
+                    upsert.setString(2, SEASONS[key2]);
+                }
+                case STORE_SUPPLIER_MONTH -> {
+                    upsert.setInt(1, key1);
+                    upsert.setInt(2, key2);
+                    upsert.setInt(3, key3 / 12);
+                    upsert.setInt(4, key3 % 12 + 1);
+                }
+            }
+            return cube.keyCount + 1;
+        }
+    }
+
+    //facts as parallel arrays
+    private static final class Facts {
+
+        private int[] orderId = new int[64];
+        private int[] productId = new int[64];
+        private int[] storeId = new int[64];
+        private int[] supplierId = new int[64];
+        private int[] epochDay = new int[64];
+        private int[] quantity = new int[64];
+        private long[] cents = new long[64];
+        private int size;
+
+        void add(int orderId, int productId, int storeId, int supplierId, int epochDay, int quantity, long cents) {
+            if (size == this.orderId.length) {
+                grow();
+            }
+            this.orderId[size] = orderId;
+            this.productId[size] = productId;
+            this.storeId[size] = storeId;
+            this.supplierId[size] = supplierId;
+            this.epochDay[size] = epochDay;
+            this.quantity[size] = quantity;
+            this.cents[size] = cents;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        private void grow() {
+            int capacity = orderId.length * 2;
+            orderId = Arrays.copyOf(orderId, capacity);
+            productId = Arrays.copyOf(productId, capacity);
+            storeId = Arrays.copyOf(storeId, capacity);
+            supplierId = Arrays.copyOf(supplierId, capacity);
+            epochDay = Arrays.copyOf(epochDay, capacity);
+            quantity = Arrays.copyOf(quantity, capacity);
+            cents = Arrays.copyOf(cents, capacity);
+        }
+    }
+
+    //sums of one cube keyed by up to three ints, open addressing with linear probing like IntIntHashMap.
+    //the sums of a taken slot can go back to 0 or below when replaced facts are taken out
+    private static final class CubeTable {
+
+        private int[] key1;
+        private int[] key2;
+        private int[] key3;
+        private long[] cents;
+        private long[] quantity;
+        private long[] count;
+        private boolean[] used;
+        private int mask;
+        private int size;
+
+        CubeTable() {
+            allocate(64);
+        }
+
+        void add(int k1, int k2, int k3, long amount, int units, int facts) {
+            int slot = slot(k1, k2, k3);
+            while (used[slot] && (key1[slot] != k1 || key2[slot] != k2 || key3[slot] != k3)) {
+                slot = (slot + 1) & mask;
+            }
+            if (!used[slot]) {
+                key1[slot] = k1;
+                key2[slot] = k2;
+                key3[slot] = k3;
+                used[slot] = true;
+                size++;
+            }
+            cents[slot] += amount;
+            quantity[slot] += units;
+            count[slot] += facts;
+            if (size * 2 > count.length) {
+                rehash(count.length << 1);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return count.length;
+        }
+
+        void clear() {
+            Arrays.fill(used, false);
+            Arrays.fill(count, 0);
+            Arrays.fill(cents, 0);
+            Arrays.fill(quantity, 0);
+            size = 0;
+        }
+
+        private int slot(int k1, int k2, int k3) {
+            int h = ((k1 * 31 + k2) * 31 + k3) * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private void allocate(int capacity) {
+            key1 = new int[capacity];
+            key2 = new int[capacity];
+            key3 = new int[capacity];
+            cents = new long[capacity];
+            quantity = new long[capacity];
+            count = new long[capacity];
+            used = new boolean[capacity];
+            mask = capacity - 1;
+        }
+
+        private void rehash(int capacity) {
+            int[] oldKey1 = key1;
+            int[] oldKey2 = key2;
+            int[] oldKey3 = key3;
+            long[] oldCents = cents;
+            long[] oldQuantity = quantity;
+            long[] oldCount = count;
+            boolean[] oldUsed = used;
+            allocate(capacity);
+            for (int i = 0; i < oldCount.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = slot(oldKey1[i], oldKey2[i], oldKey3[i]);
+                    while (used[slot]) {
+                        slot = (slot + 1) & mask;
+                    }
+                    key1[slot] = oldKey1[i];
+                    key2[slot] = oldKey2[i];
+                    key3[slot] = oldKey3[i];
+                    cents[slot] = oldCents[i];
+                    quantity[slot] = oldQuantity[i];
+                    count[slot] = oldCount[i];
+                    used[slot] = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+
+//builds the timee dimension from the transactions as they are joined. the calendar attributes are
+//derived in java from the order date, a primitive set remembers which (TIME_ID, ORDER_DATE) keys are
+//already in the warehouse, and only the new rows are written, once per chunk, before the facts of
+//that chunk. TIME_ID alone is not a calendar key, the same id occurs with many order dates
+class TimeDimensionBuilder {
+
+    private final Connection connWarehouse;
+    private final LongHashSet seenKeys = new LongHashSet();
+    private final List<Object[]> pendingRows = new ArrayList<>();
+
+    TimeDimensionBuilder(Connection connWarehouse) throws SQLException {
+        this.connWarehouse = connWarehouse;
+        try (Statement stmt = connWarehouse.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT TIME_ID, ORDER_DATE FROM timee")) {
+            while (rs.next()) {
+                seenKeys.add(key(rs.getInt(1), rs.getDate(2).toLocalDate()));
+            }
+        }
+    }
+
+    void add(Transaction transaction) {
+        Date orderDate = transaction.getOrderDate();
+        if (orderDate == null) {
+            return;
+        }
+        int timeId = transaction.getTimeId();
+        LocalDate date = orderDate.toLocalDate();
+        if (!seenKeys.add(key(timeId, date))) {
+            return;
+        }
+        pendingRows.add(new Object[] {
+                timeId,
+                orderDate,
+                date.getDayOfMonth(),
+                week(date),
+                date.getMonthValue(),
+                date.getYear(),
+                quarter(date) });
+    }
+
+    //writes the time rows queued since the last flush and returns whether there were any
+    boolean flush() throws SQLException {
+        if (pendingRows.isEmpty()) {
+            return false;
+        }
+        DimensionManager.insertIgnore(connWarehouse,
+                "timee (TIME_ID, ORDER_DATE, DAY, WEEK, MONTH, YEAR, QUARTER)", 7, pendingRows);
+        pendingRows.clear();
+        return true;
+    }
+
+    //primary key of timee packed into one long
+    private static long key(int timeId, LocalDate date) {
+        return ((long) timeId << 32) | (date.toEpochDay() & 0xFFFFFFFFL);
+    }
+
+    //same numbering as MySQL WEEK(date, 1): weeks start on Monday, week 1 is the first week with
+    //four or more days in the year and the days before it are week 0
+    static int week(LocalDate date) {
+        LocalDate firstWeekStart = LocalDate.of(date.getYear(), 1, 4)
+                .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        if (date.isBefore(firstWeekStart)) {
+            return 0;
+        }
+        return (int) (ChronoUnit.DAYS.between(firstWeekStart, date) / 7) + 1;
+    }
+
+    static int quarter(LocalDate date) {
+        return (date.getMonthValue() - 1) / 3 + 1;
+    }
+}
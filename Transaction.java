@@ -0,0 +1,30 @@
+package com.meshjoin;
+
+import java.sql.Date;
+
+class Transaction 
+{
+    private final int orderId;
+    private final Date orderDate; // java.sql.Date
+    private final int productId;
+    private final int quantity;
+    private final int customerId;
+    private final int timeId; // Added TIME_ID
+
+    public Transaction(int orderId, Date orderDate, int productId, int quantity, int customerId, int timeId) 
+{
+        this.orderId = orderId;
+        this.orderDate = orderDate;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.customerId = customerId;
+        this.timeId = timeId;
+}
+
+    public int getOrderId() { return orderId; }
+    public Date getOrderDate() { return orderDate; }
+    public int getProductId() { return productId; }
+    public int getQuantity() { return quantity; }
+    public int getCustomerId() { return customerId; }
+    public int getTimeId() { return timeId; } // Added getter for TIME_ID
+}
@@ -0,0 +1,99 @@
+package com.meshjoin;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+//a chunk of the transaction stream in struct-of-arrays form: one int column per attribute, with
+//ORDER_DATE as days since the epoch, so a row costs six ints instead of a Transaction, a Date and a
+//list node. rows keep stream order. Transaction objects are only built for rows that leave the join
+final class TransactionChunk {
+
+    //epoch day of a transaction whose ORDER_DATE is NULL, turned back into a null Date by orderDate
+    static final int NO_DATE = Integer.MIN_VALUE;
+
+    //returned by exhausted streams, never added to
+    static final TransactionChunk EMPTY = new TransactionChunk(0);
+
+    private int[] orderId;
+    private int[] epochDay;
+    private int[] productId;
+    private int[] quantity;
+    private int[] customerId;
+    private int[] timeId;
+    private int size;
+
+    TransactionChunk(int capacity) {
+        orderId = new int[capacity];
+        epochDay = new int[capacity];
+        productId = new int[capacity];
+        quantity = new int[capacity];
+        customerId = new int[capacity];
+        timeId = new int[capacity];
+    }
+
+    void add(int orderId, int epochDay, int productId, int quantity, int customerId, int timeId) {
+        if (size == this.orderId.length) {
+            grow();
+        }
+        this.orderId[size] = orderId;
+        this.epochDay[size] = epochDay;
+        this.productId[size] = productId;
+        this.quantity[size] = quantity;
+        this.customerId[size] = customerId;
+        this.timeId[size] = timeId;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int orderId(int row) {
+        return orderId[row];
+    }
+
+    int epochDay(int row) {
+        return epochDay[row];
+    }
+
+    int productId(int row) {
+        return productId[row];
+    }
+
+    int quantity(int row) {
+        return quantity[row];
+    }
+
+    int customerId(int row) {
+        return customerId[row];
+    }
+
+    int timeId(int row) {
+        return timeId[row];
+    }
+
+    Transaction transaction(int row) {
+        return new Transaction(orderId[row], orderDate(epochDay[row]), productId[row], quantity[row], customerId[row],
+                timeId[row]);
+    }
+
+    //ORDER_DATE as the java.sql.Date the writers bind, the local midnight of that day like getDate returns it
+    static Date orderDate(int epochDay) {
+        return epochDay == NO_DATE ? null : Date.valueOf(LocalDate.ofEpochDay(epochDay));
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, size * 2);
+        orderId = Arrays.copyOf(orderId, capacity);
+        epochDay = Arrays.copyOf(epochDay, capacity);
+        productId = Arrays.copyOf(productId, capacity);
+        quantity = Arrays.copyOf(quantity, capacity);
+        customerId = Arrays.copyOf(customerId, capacity);
+        timeId = Arrays.copyOf(timeId, capacity);
+    }
+}
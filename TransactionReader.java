@@ -0,0 +1,111 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+//streams the transactions table forward-only in ORDER_ID keyset pages, so only one segment is
+//ever held on the client no matter how large the table is. progress is reported from the rows
+//read so far and the last ORDER_ID, without counting the table first
+class TransactionReader implements MeshJoinEngine.TransactionStream, AutoCloseable {
+
+    static final String SEGMENT_QUERY = segmentQuery(LoadScope.ALL);
+    //a progress line is printed every this many segments
+    private static final int PROGRESS_INTERVAL = 50;
+
+    private final PreparedStatement segmentStatement;
+    private final int limit;
+    //index of the LIMIT parameter, after those of the scope
+    private final int limitIndex;
+
+    private int lastOrderId;
+    private long rowsRead;
+    private int segmentsRead;
+    private boolean exhausted;
+    private final long startNanos = System.nanoTime();
+
+    //reads the transactions after afterOrderId, Integer.MIN_VALUE for all of them
+    TransactionReader(Connection connSource, int limit, int afterOrderId) throws SQLException {
+        this(connSource, limit, afterOrderId, LoadScope.ALL);
+    }
+
+    //reads the transactions of the scope after afterOrderId
+    TransactionReader(Connection connSource, int limit, int afterOrderId, LoadScope scope) throws SQLException {
+        this.segmentStatement = connSource.prepareStatement(segmentQuery(scope));
+        this.limitIndex = scope.bindTransactionFilter(segmentStatement, 2);
+        this.limit = limit;
+        this.lastOrderId = afterOrderId;
+    }
+
+    //one keyset page of the transactions in the scope, the ORDER_ID to continue after is the first parameter
+    //and the page size the last
+    static String segmentQuery(LoadScope scope) {
+        return """
+            SELECT ORDER_ID, ORDER_DATE, PRODUCT_ID, QUANTITY, CUSTOMER_ID, TIME_ID
+            FROM transactions
+            WHERE ORDER_ID > ?%s
+            ORDER BY ORDER_ID
+            LIMIT ?
+            """.formatted(scope.transactionFilter());
+    }
+
+    @Override
+    public TransactionChunk nextChunk() throws SQLException {
+        if (exhausted) {
+            return TransactionChunk.EMPTY;
+        }
+        segmentStatement.setInt(1, lastOrderId);
+        segmentStatement.setInt(limitIndex, limit);
+        TransactionChunk segment;
+        try (ResultSet rsTransactions = segmentStatement.executeQuery()) {
+            segment = readTransactionSegment(rsTransactions, limit);
+        }
+
+        // a short page means the end of the table has been reached
+        if (segment.size() < limit) {
+            exhausted = true;
+        }
+        if (!segment.isEmpty()) {
+            lastOrderId = segment.orderId(segment.size() - 1);
+            rowsRead += segment.size();
+            segmentsRead++;
+            if (exhausted || segmentsRead % PROGRESS_INTERVAL == 0) {
+                reportProgress();
+            }
+        }
+        return segment;
+    }
+
+    //extracts a segment of transactions from the result set, in ORDER_ID order, straight into the
+    //columns of a chunk. ORDER_DATE is read as a LocalDate, which skips the java.sql.Date per row;
+    //a NULL one is kept as TransactionChunk.NO_DATE
+    static TransactionChunk readTransactionSegment(ResultSet rsTransactions, int limit) throws SQLException {
+        TransactionChunk segment = new TransactionChunk(limit);
+
+        while (segment.size() < limit && rsTransactions.next()) {
+            int orderId = rsTransactions.getInt("ORDER_ID");
+            LocalDate orderDate = rsTransactions.getObject("ORDER_DATE", LocalDate.class);
+            int epochDay = orderDate == null ? TransactionChunk.NO_DATE : (int) orderDate.toEpochDay();
+            int productId = rsTransactions.getInt("PRODUCT_ID");
+            int quantity = rsTransactions.getInt("QUANTITY");
+            int customerId = rsTransactions.getInt("CUSTOMER_ID");
+            int timeId = rsTransactions.getInt("TIME_ID");
+
+            segment.add(orderId, epochDay, productId, quantity, customerId, timeId);
+        }
+        return segment;
+    }
+
+    private void reportProgress() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%d transactions read (last ORDER_ID %d, %.0f rows/s)%n",
+                rowsRead, lastOrderId, seconds > 0 ? rowsRead / seconds : 0.0);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        segmentStatement.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.meshjoin;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+
+//spill file for the transactions the join could not match. the columns are those of the
+//transactions table plus which side was missing, so the rows can be checked and loaded again
+//once the master data is fixed. the file is only created when the first row is spilled.
+//a load that starts from the beginning starts the file over, so no rows of an earlier load are left
+//in it. a load resumed after its checkpoint appends: the checkpoint counts the rows spilled before it
+//as done and never reads them again, so the file is the only place they are kept. rows spilled after
+//the checkpoint can be written a second time
+class UnmatchedTransactionFile implements MeshJoinEngine.UnmatchedSink, AutoCloseable {
+
+    private static final String HEADER = "ORDER_ID,ORDER_DATE,PRODUCT_ID,QUANTITY,CUSTOMER_ID,TIME_ID,MISSING\n";
+
+    private final Path path;
+    private final boolean append;
+    private BufferedWriter out;
+    private long rows;
+
+    UnmatchedTransactionFile(Path path, boolean append) throws IOException {
+        this.path = path;
+        this.append = append;
+        if (!append) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Override
+    public void onUnmatched(Transaction transaction, boolean customerFound, boolean productFound) throws SQLException {
+        try {
+            if (out == null) {
+                boolean fresh = !append || !Files.exists(path) || Files.size(path) == 0;
+                out = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+                if (fresh) {
+                    out.write(HEADER);
+                }
+            }
+            out.write(transaction.getOrderId() + "," + transaction.getOrderDate() + "," + transaction.getProductId() + ","
+                    + transaction.getQuantity() + "," + transaction.getCustomerId() + "," + transaction.getTimeId() + ","
+                    + missing(customerFound, productFound) + "\n");
+            rows++;
+        } catch (IOException e) {
+            throw new SQLException("Could not write unmatched transaction " + transaction.getOrderId() + " to " + path, e);
+        }
+    }
+
+    private static String missing(boolean customerFound, boolean productFound) {
+        if (!customerFound && !productFound) {
+            return "customer+product";
+        }
+        return customerFound ? "product" : "customer";
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+    }
+}
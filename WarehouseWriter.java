@@ -0,0 +1,79 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+
+//loads joined rows into the warehouse over its own connection: dimension upkeep, time rows, the
+//sales facts and their summary rows. every join worker gets its own writer with its own statement and batch, so nothing
+//is shared between the parallel writers
+class WarehouseWriter implements EtlPipeline.BatchWriter {
+
+    private final DimensionManager dimensions;
+    private final TimeDimensionBuilder timeDimension;
+    private final FactSink facts;
+    private final EtlMetrics metrics;
+    //newest ORDER_DATE among the facts written so far, stored with the checkpoint
+    private Date latestOrderDate;
+
+    WarehouseWriter(Connection connWarehouse, EtlConfig config, LoadCheckpoint checkpoint, SalesCubes.Stripe cubes,
+            EtlMetrics metrics) throws SQLException {
+        this.metrics = metrics;
+        this.dimensions = new DimensionManager(connWarehouse);
+        this.timeDimension = new TimeDimensionBuilder(connWarehouse);
+        this.facts = FactSink.open(connWarehouse, config, checkpoint, cubes);
+    }
+
+    //new dimension members are written and committed straight away, before any fact that references
+    //them is executed. committing them at once keeps their row locks short, so parallel writers
+    //adding the same member never wait on each other's fact transactions
+    @Override
+    public void write(List<EtlPipeline.JoinedRow> batch, int lowWatermark) throws SQLException {
+        if (batch.isEmpty()) {
+            facts.mark(lowWatermark, latestOrderDate);
+            return;
+        }
+        long start = System.nanoTime();
+        for (EtlPipeline.JoinedRow row : batch) {
+            queueDimensions(row.transaction, row.customer, row.product);
+        }
+        boolean newDimensions = dimensions.flush();
+        newDimensions |= timeDimension.flush();
+        if (newDimensions) {
+            facts.commit();
+        }
+        metrics.record(EtlMetrics.Stage.DIMENSION_UPKEEP, start);
+
+        start = System.nanoTime();
+        for (EtlPipeline.JoinedRow row : batch) {
+            Product product = row.product;
+            double totalSales = product.getProductPrice() * row.transaction.getQuantity();
+            facts.add(row.transaction, totalSales, product.getStoreId(), product.getSupplierId());
+            Date orderDate = row.transaction.getOrderDate();
+            if (orderDate != null && (latestOrderDate == null || orderDate.after(latestOrderDate))) {
+                latestOrderDate = orderDate;
+            }
+        }
+        facts.mark(lowWatermark, latestOrderDate);
+        metrics.record(EtlMetrics.Stage.BATCH_FLUSH, start);
+    }
+
+    @Override
+    public void finish() throws SQLException {
+        long start = System.nanoTime();
+        facts.finish();
+        metrics.record(EtlMetrics.Stage.BATCH_FLUSH, start);
+        facts.close();
+    }
+
+    //queues any new product, customer, store, supplier and time row before the fact row is batched
+    //the store and supplier come denormalised with the product from the master buffer, so no lookup is needed
+    private void queueDimensions(Transaction transaction, Customer customer, Product product) {
+        dimensions.addProduct(product);
+        dimensions.addCustomer(customer);
+        dimensions.addStore(product.getStoreId(), product.getStoreName());
+        dimensions.addSupplier(product.getSupplierId(), product.getSupplierName());
+        timeDimension.add(transaction);
+    }
+}
@@ -0,0 +1,241 @@
+package com.meshjoin;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+//benchmark fixture: the shipped CSVs copied scale times into a temp directory and an in-memory H2
+//database in MySQL mode with the datasource tables loaded from those copies and an empty warehouse.
+//every copy shifts ORDER_ID, CUSTOMER_ID, PRODUCT_ID and TIME_ID by ID_STRIDE, so the transactions,
+//customers and products all grow with the scale while every transaction still finds its master rows.
+//stores and suppliers are shared between the copies, as they would be in a bigger METRO
+final class BenchmarkData implements AutoCloseable {
+
+    static final int ID_STRIDE = 1_000_000;
+
+    private static final String H2_OPTIONS = ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE"
+            + ";DB_CLOSE_DELAY=-1;NON_KEYWORDS=DAY,WEEK,MONTH,YEAR,QUARTER,VALUE";
+
+    //datasource.sql
+    private static final String[] SOURCE_DDL = {
+        "CREATE TABLE transactions (ORDER_ID INT PRIMARY KEY, ORDER_DATE DATE, PRODUCT_ID INT NOT NULL, QUANTITY INT,"
+                + " CUSTOMER_ID INT NOT NULL, TIME_ID INT)",
+        "CREATE TABLE products (PRODUCT_ID INT PRIMARY KEY, PRODUCT_NAME VARCHAR(255), PRODUCT_PRICE DECIMAL(10,2),"
+                + " SUPPLIER_ID INT, SUPPLIER_NAME VARCHAR(255), STORE_ID INT, STORE_NAME VARCHAR(255))",
+        "CREATE TABLE customers (CUSTOMER_ID INT PRIMARY KEY, CUSTOMER_NAME VARCHAR(255), GENDER VARCHAR(10))"
+    };
+
+    //datawarehouse.sql, without the foreign key on timee(TIME_ID): MySQL accepts it on the non-unique
+    //prefix of the timee key, H2 does not
+    private static final String[] WAREHOUSE_DDL = {
+        "CREATE TABLE customer (CUSTOMER_ID INT PRIMARY KEY, CUSTOMER_NAME VARCHAR(255), GENDER VARCHAR(10))",
+        "CREATE TABLE product (PRODUCT_ID INT PRIMARY KEY, PRODUCT_NAME VARCHAR(255), PRODUCT_PRICE VARCHAR(10))",
+        "CREATE TABLE store (STORE_ID INT PRIMARY KEY, STORE_NAME VARCHAR(255))",
+        "CREATE TABLE supplier (SUPPLIER_ID INT PRIMARY KEY, SUPPLIER_NAME VARCHAR(255))",
+        "CREATE TABLE timee (TIME_ID INT, ORDER_DATE DATE, DAY INT, WEEK INT, MONTH INT, YEAR INT, QUARTER INT,"
+                + " PRIMARY KEY (TIME_ID, ORDER_DATE))",
+        "CREATE TABLE sales (ORDER_ID INT PRIMARY KEY, ORDER_DATE DATE, QUANTITY INT, CUSTOMER_ID INT, PRODUCT_ID INT,"
+                + " STORE_ID INT, SUPPLIER_ID INT, TIME_ID INT, TOTAL_SALES DECIMAL(10,2),"
+                + " FOREIGN KEY (PRODUCT_ID) REFERENCES product(PRODUCT_ID),"
+                + " FOREIGN KEY (CUSTOMER_ID) REFERENCES customer(CUSTOMER_ID),"
+                + " FOREIGN KEY (STORE_ID) REFERENCES store(STORE_ID),"
+                + " FOREIGN KEY (SUPPLIER_ID) REFERENCES supplier(SUPPLIER_ID))"
+    };
+
+    private static final int INSERT_BATCH = 10_000;
+
+    private final Path csvDirectory;
+    private final String databaseName;
+
+    private final List<Transaction> transactions = new ArrayList<>();
+    private final List<Customer> customers;
+    private final List<Product> products;
+
+    private BenchmarkData(Path csvDirectory, String databaseName) throws IOException {
+        this.csvDirectory = csvDirectory;
+        this.databaseName = databaseName;
+        try (CsvTransactionStream stream = new CsvTransactionStream(csvDirectory.resolve("transactions.csv"), INSERT_BATCH);
+             CsvMasterDataSource masterData = new CsvMasterDataSource(csvDirectory.resolve("customers.csv"),
+                     csvDirectory.resolve("products.csv"))) {
+            for (TransactionChunk chunk = stream.nextChunk(); !chunk.isEmpty(); chunk = stream.nextChunk()) {
+                for (int row = 0; row < chunk.size(); row++) {
+                    transactions.add(chunk.transaction(row));
+                }
+            }
+            customers = masterData.loadCustomers(0, masterData.customerCount());
+            products = masterData.loadProducts(0, masterData.productCount());
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    //writes the scaled CSVs and loads them into a fresh database; the warehouse tables are left empty
+    static BenchmarkData create(int scale) throws IOException, SQLException {
+        Path csvDirectory = Files.createTempDirectory("meshjoin-x" + scale + "-");
+        writeScaledCsv(shippedCsvDirectory(), csvDirectory, scale);
+        BenchmarkData data = new BenchmarkData(csvDirectory, "meshjoin_x" + scale + "_" + System.nanoTime());
+        data.createDatabase();
+        return data;
+    }
+
+    //directory with the shipped CSVs: -Dmeshjoin.csv.dir, else the working directory or its parent,
+    //so the benchmarks run from the repository root as well as from the benchmarks module
+    static Path shippedCsvDirectory() {
+        String configured = System.getProperty("meshjoin.csv.dir");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        for (String candidate : new String[] { ".", ".." }) {
+            if (Files.isRegularFile(Paths.get(candidate, "transactions.csv"))) {
+                return Paths.get(candidate);
+            }
+        }
+        throw new IllegalStateException("transactions.csv not found, run from the repository root or set -Dmeshjoin.csv.dir");
+    }
+
+    Path csvDirectory() {
+        return csvDirectory;
+    }
+
+    Connection openSource() throws SQLException {
+        return DriverManager.getConnection("jdbc:h2:mem:" + databaseName + H2_OPTIONS + ";SCHEMA=datasource", "sa", "");
+    }
+
+    Connection openWarehouse() throws SQLException {
+        return DriverManager.getConnection("jdbc:h2:mem:" + databaseName + H2_OPTIONS + ";SCHEMA=datawarehouse", "sa", "");
+    }
+
+    //the scaled transactions in file order
+    List<Transaction> transactions() {
+        return transactions;
+    }
+
+    List<Customer> customers() {
+        return customers;
+    }
+
+    List<Product> products() {
+        return products;
+    }
+
+    //drops the database and the scaled CSVs
+    @Override
+    public void close() throws IOException, SQLException {
+        try (Connection conn = openSource();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+        try (Stream<Path> files = Files.walk(csvDirectory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private void createDatabase() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:" + databaseName + H2_OPTIONS, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE SCHEMA datasource");
+            stmt.execute("CREATE SCHEMA datawarehouse");
+            stmt.execute("SET SCHEMA datasource");
+            for (String ddl : SOURCE_DDL) {
+                stmt.execute(ddl);
+            }
+            stmt.execute("SET SCHEMA datawarehouse");
+            for (String ddl : WAREHOUSE_DDL) {
+                stmt.execute(ddl);
+            }
+        }
+        try (Connection conn = openSource()) {
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO transactions VALUES (?, ?, ?, ?, ?, ?)")) {
+                int pending = 0;
+                for (Transaction t : transactions) {
+                    pstmt.setInt(1, t.getOrderId());
+                    pstmt.setDate(2, t.getOrderDate());
+                    pstmt.setInt(3, t.getProductId());
+                    pstmt.setInt(4, t.getQuantity());
+                    pstmt.setInt(5, t.getCustomerId());
+                    pstmt.setInt(6, t.getTimeId());
+                    pstmt.addBatch();
+                    if (++pending == INSERT_BATCH) {
+                        pstmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                pstmt.executeBatch();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO customers VALUES (?, ?, ?)")) {
+                for (Customer c : customers) {
+                    pstmt.setInt(1, c.getCustomerId());
+                    pstmt.setString(2, c.getCustomerName());
+                    pstmt.setString(3, c.getGender());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO products VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (Product p : products) {
+                    pstmt.setInt(1, p.getProductId());
+                    pstmt.setString(2, p.getProductName());
+                    pstmt.setDouble(3, p.getProductPrice());
+                    pstmt.setInt(4, p.getSupplierId());
+                    pstmt.setString(5, p.getSupplierName());
+                    pstmt.setInt(6, p.getStoreId());
+                    pstmt.setString(7, p.getStoreName());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    //scale copies of the three shipped files, keeping their headers and value formats
+    private static void writeScaledCsv(Path from, Path to, int scale) throws IOException {
+        BenchmarkData shipped = new BenchmarkData(from, null);
+        try (BufferedWriter out = Files.newBufferedWriter(to.resolve("transactions.csv"), StandardCharsets.UTF_8)) {
+            out.write("Order ID,Order Date,ProductID,Quantity Ordered,customer_id,time_id\n");
+            for (int k = 0; k < scale; k++) {
+                int shift = k * ID_STRIDE;
+                for (Transaction t : shipped.transactions) {
+                    out.write((t.getOrderId() + shift) + "," + t.getOrderDate() + " 00:00:00," + (t.getProductId() + shift)
+                            + "," + t.getQuantity() + "," + (t.getCustomerId() + shift) + "," + (t.getTimeId() + shift) + "\n");
+                }
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(to.resolve("customers.csv"), StandardCharsets.UTF_8)) {
+            out.write("customer_id,customer_name,gender\n");
+            for (int k = 0; k < scale; k++) {
+                for (Customer c : shipped.customers) {
+                    out.write((c.getCustomerId() + k * ID_STRIDE) + "," + quote(c.getCustomerName()) + "," + c.getGender() + "\n");
+                }
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(to.resolve("products.csv"), StandardCharsets.UTF_8)) {
+            out.write("productID,productName,productPrice,supplierID,supplierName,storeID,storeName\n");
+            for (int k = 0; k < scale; k++) {
+                for (Product p : shipped.products) {
+                    out.write((p.getProductId() + k * ID_STRIDE) + "," + quote(p.getProductName()) + ","
+                            + String.format(Locale.ROOT, "%.2f$", p.getProductPrice()) + "," + p.getSupplierId() + ","
+                            + quote(p.getSupplierName()) + "," + p.getStoreId() + "," + quote(p.getStoreName()) + "\n");
+                }
+            }
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,136 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//one batch of joined rows through WarehouseWriter: dimension upkeep against warm key sets and the
+//batched fact INSERT with its periodic commit. the dimensions are loaded once before the trial, so
+//the steady state of a long load is measured, and the facts are cleared before every iteration.
+//with cubes on the writer also keeps the summary tables of SalesCubes, which are cleared with the facts.
+//only the INSERT sink runs here, H2 has no LOAD DATA; FactSinkBenchmark compares both on MySQL
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FactBatchBenchmark {
+
+    //rows prepared up front, so the batches are not allocated while measuring
+    private static final int MIN_POOL_ROWS = 1 << 20;
+
+    @Param({ "1", "10", "100" })
+    public int scale;
+
+    @Param({ "1000" })
+    public int batchSize;
+
+    @Param({ "10" })
+    public int commitInterval;
+
+    @Param({ "off", "on" })
+    public String cubes;
+
+    private BenchmarkData data;
+    private EtlConfig config;
+    //recorded like in a real load, so their cost is part of the score
+    private final EtlMetrics metrics = new EtlMetrics();
+    private Connection connWarehouse;
+    private WarehouseWriter writer;
+    //the joined transactions repeated under fresh ORDER_IDs up to MIN_POOL_ROWS
+    private List<EtlPipeline.JoinedRow> pool;
+    private int nextRow;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        data = BenchmarkData.create(scale);
+        Map<Integer, Customer> customers = new HashMap<>();
+        for (Customer customer : data.customers()) {
+            customers.put(customer.getCustomerId(), customer);
+        }
+        Map<Integer, Product> products = new HashMap<>();
+        for (Product product : data.products()) {
+            products.put(product.getProductId(), product);
+        }
+        List<Transaction> transactions = data.transactions();
+        pool = new ArrayList<>(Math.max(MIN_POOL_ROWS, transactions.size()));
+        for (int orderId = 1; pool.size() < MIN_POOL_ROWS || orderId <= transactions.size(); orderId++) {
+            Transaction t = transactions.get((orderId - 1) % transactions.size());
+            pool.add(new EtlPipeline.JoinedRow(new Transaction(orderId, t.getOrderDate(), t.getProductId(),
+                    t.getQuantity(), t.getCustomerId(), t.getTimeId()),
+                    customers.get(t.getCustomerId()), products.get(t.getProductId())));
+        }
+
+        config = EtlConfig.fromArgs(new String[] { "--batch-size=" + batchSize, "--commit-every=" + commitInterval,
+                "--cubes=" + cubes });
+        connWarehouse = data.openWarehouse();
+        //one pass over the scaled data puts every dimension member in place
+        writer = new WarehouseWriter(connWarehouse, config, LoadCheckpoint.disabled(), salesCubes().stripe(connWarehouse, 0), metrics);
+        for (int from = 0; from < transactions.size(); from += batchSize) {
+            writer.write(pool.subList(from, Math.min(transactions.size(), from + batchSize)), Integer.MIN_VALUE);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clearFacts() throws Exception {
+        restart();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        writer.finish();
+        connWarehouse.close();
+        data.close();
+    }
+
+    @Benchmark
+    public void writeBatch(RowCounter counter) throws Exception {
+        if (nextRow + batchSize > pool.size()) {
+            //the pool is used up, rare enough not to matter in the score
+            restart();
+        }
+        List<EtlPipeline.JoinedRow> batch = pool.subList(nextRow, nextRow + batchSize);
+        nextRow += batchSize;
+        writer.write(batch, Integer.MIN_VALUE);
+        counter.rows += batchSize;
+    }
+
+    //empties sales and the summary tables and starts a new writer at the beginning of the pool
+    private void restart() throws Exception {
+        writer.finish();
+        try (Statement stmt = connWarehouse.createStatement()) {
+            stmt.execute("TRUNCATE TABLE sales");
+            if (config.isCubes()) {
+                for (SalesCubes.Cube cube : SalesCubes.Cube.values()) {
+                    stmt.execute("TRUNCATE TABLE " + cube.getTable());
+                }
+            }
+        }
+        connWarehouse.commit();
+        writer = new WarehouseWriter(connWarehouse, config, LoadCheckpoint.disabled(), salesCubes().stripe(connWarehouse, 0), metrics);
+        nextRow = 0;
+    }
+
+    private SalesCubes salesCubes() throws Exception {
+        return config.isCubes() ? SalesCubes.begin(connWarehouse) : SalesCubes.disabled();
+    }
+}
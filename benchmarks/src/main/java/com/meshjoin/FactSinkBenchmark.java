@@ -0,0 +1,95 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+//compares the batched-INSERT and LOAD DATA fact sinks on a warehouse that has already been loaded once.
+//the existing sales rows are replayed under fresh ORDER_IDs above the current maximum, so every
+//foreign key is valid, and the benchmark rows are deleted again after each run.
+//the warehouse, login and --batch-size are taken like the ETL takes them, from the command line, a
+//--config file or METRO_ETL_ environment variables, so the password need not be given on the command line.
+//usage: FactSinkBenchmark --warehouse-db=NAME [--db-host=HOST:PORT] [--user=NAME] [--config=FILE] [--rows=N]
+public class FactSinkBenchmark {
+
+    public static void main(String[] args) throws SQLException {
+        int rows = 100_000;
+        List<String> options = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--rows=")) {
+                rows = Integer.parseInt(arg.substring("--rows=".length()));
+            } else {
+                options.add(arg);
+            }
+        }
+        EtlConfig settings = EtlConfig.load(options.toArray(new String[0]), System.getenv());
+        if (settings.getWarehouseDatabase() == null || settings.getUser() == null || settings.getPassword() == null) {
+            System.err.println("FactSinkBenchmark needs --warehouse-db, --user and --password, e.g. from --config or METRO_ETL_PASSWORD");
+            return;
+        }
+        String url = String.format(MeshJoinProcessor.DB_URL_TEMPLATE, settings.getDatabaseHost(), settings.getWarehouseDatabase())
+                + "&allowLoadLocalInfile=true";
+
+        try (Connection connWarehouse = DriverManager.getConnection(url, settings.getUser(), settings.getPassword())) {
+            List<Object[]> templates = loadTemplates(connWarehouse);
+            if (templates.isEmpty()) {
+                System.err.println("sales is empty, run MeshJoinProcessor first");
+                return;
+            }
+            for (String sink : new String[] { "insert", "load-data" }) {
+                List<String> sinkOptions = new ArrayList<>(options);
+                sinkOptions.add("--sink=" + sink);
+                EtlConfig config = EtlConfig.load(sinkOptions.toArray(new String[0]), System.getenv());
+                int firstOrderId = maxOrderId(connWarehouse) + 1;
+                long start = System.nanoTime();
+                try (FactSink facts = FactSink.open(connWarehouse, config, LoadCheckpoint.disabled(),
+                        SalesCubes.disabled().stripe(connWarehouse, 0))) {
+                    for (int i = 0; i < rows; i++) {
+                        Object[] t = templates.get(i % templates.size());
+                        Transaction transaction = new Transaction(firstOrderId + i, null, (Integer) t[2], (Integer) t[0], (Integer) t[1], (Integer) t[6]);
+                        facts.add(transaction, (Double) t[5], (Integer) t[3], (Integer) t[4]);
+                    }
+                    facts.finish();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-9s %,d rows in %.2f s, %,.0f rows/s%n", sink, rows, seconds, rows / seconds);
+                deleteFrom(connWarehouse, firstOrderId);
+            }
+        }
+    }
+
+    //QUANTITY, CUSTOMER_ID, PRODUCT_ID, STORE_ID, SUPPLIER_ID, TOTAL_SALES, TIME_ID of up to 10000 facts
+    private static List<Object[]> loadTemplates(Connection connWarehouse) throws SQLException {
+        List<Object[]> templates = new ArrayList<>();
+        String query = "SELECT QUANTITY, CUSTOMER_ID, PRODUCT_ID, STORE_ID, SUPPLIER_ID, TOTAL_SALES, TIME_ID FROM sales LIMIT 10000";
+        try (Statement stmt = connWarehouse.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                templates.add(new Object[] { rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4),
+                        rs.getInt(5), rs.getDouble(6), rs.getInt(7) });
+            }
+        }
+        return templates;
+    }
+
+    private static int maxOrderId(Connection connWarehouse) throws SQLException {
+        try (Statement stmt = connWarehouse.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(ORDER_ID), 0) FROM sales")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void deleteFrom(Connection connWarehouse, int firstOrderId) throws SQLException {
+        try (PreparedStatement pstmt = connWarehouse.prepareStatement("DELETE FROM sales WHERE ORDER_ID >= ?")) {
+            pstmt.setInt(1, firstOrderId);
+            pstmt.executeUpdate();
+        }
+        connWarehouse.commit();
+    }
+}
@@ -0,0 +1,142 @@
+package com.meshjoin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//the probe and enrich step of the join on its own: one full MESHJOIN pass over the scaled
+//transactions with the stream and the master partitions served from memory, so only the window
+//upkeep and the hash probes are measured. the sinks just count the joined tuples
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JoinBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int scale;
+
+    @Param({ "1", "4" })
+    public int shards;
+
+    //segment size of the stream, and with fixed sizing also the stream chunk and both partition sizes
+    @Param({ "200" })
+    public int partitionSize;
+
+    //fixed: every size is partitionSize, as before JoinSizing. planned: JoinSizing plans them for 1g
+    @Param({ "fixed", "planned" })
+    public String sizing;
+
+    private BenchmarkData data;
+    private MasterDataSource masterData;
+    //the scaled transactions cut into stream chunks once, so the benchmark does not build them
+    private final List<TransactionChunk> chunks = new ArrayList<>();
+    //recorded like in a real load, so their cost is part of the score
+    private final EtlMetrics metrics = new EtlMetrics();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        data = BenchmarkData.create(scale);
+        List<Transaction> transactions = data.transactions();
+        for (int from = 0; from < transactions.size(); from += partitionSize) {
+            TransactionChunk chunk = new TransactionChunk(partitionSize);
+            for (int i = from; i < Math.min(transactions.size(), from + partitionSize); i++) {
+                Transaction t = transactions.get(i);
+                chunk.add(t.getOrderId(), (int) t.getOrderDate().toLocalDate().toEpochDay(), t.getProductId(),
+                        t.getQuantity(), t.getCustomerId(), t.getTimeId());
+            }
+            chunks.add(chunk);
+        }
+        List<Customer> customers = data.customers();
+        List<Product> products = data.products();
+        masterData = new MasterDataSource() {
+            @Override
+            public int customerCount() {
+                return customers.size();
+            }
+
+            @Override
+            public int productCount() {
+                return products.size();
+            }
+
+            @Override
+            public List<Customer> loadCustomers(int offset, int limit) {
+                return customers.subList(offset, Math.min(customers.size(), offset + limit));
+            }
+
+            @Override
+            public List<Product> loadProducts(int offset, int limit) {
+                return products.subList(offset, Math.min(products.size(), offset + limit));
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        data.close();
+    }
+
+    @Benchmark
+    public long meshJoin(RowCounter counter) throws Exception {
+        MeshJoinEngine.TransactionStream stream = new MeshJoinEngine.TransactionStream() {
+            private int next;
+
+            @Override
+            public TransactionChunk nextChunk() {
+                return next < chunks.size() ? chunks.get(next++) : TransactionChunk.EMPTY;
+            }
+        };
+        CountingSink[] sinks = new CountingSink[shards];
+        List<MeshJoinEngine.JoinSink> sinkList = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            sinks[i] = new CountingSink();
+            sinkList.add(sinks[i]);
+        }
+        EtlConfig config = EtlConfig.fromArgs(sizing.equals("fixed")
+                ? new String[] { "--stream-chunk=" + partitionSize, "--customer-partition=" + partitionSize,
+                        "--product-partition=" + partitionSize }
+                : new String[] { "--join-memory=1g", "--segment-size=" + partitionSize });
+        try (MeshJoinEngine engine = new MeshJoinEngine(masterData, JoinSizing.plan(masterData, config), sinkList,
+                (transaction, customerFound, productFound) -> { }, config, metrics)) {
+            engine.run(stream);
+        }
+        long checksum = 0;
+        for (CountingSink sink : sinks) {
+            counter.rows += sink.matches;
+            checksum += sink.checksum;
+        }
+        return checksum;
+    }
+
+    private static final class CountingSink implements MeshJoinEngine.JoinSink {
+        long matches;
+        long checksum;
+
+        @Override
+        public void onMatch(Transaction transaction, Customer customer, Product product) {
+            matches++;
+            checksum += customer.getCustomerId() + product.getStoreId();
+        }
+
+        @Override
+        public void onChunkExpired(int lowWatermark) {
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//loading of the master data partitions the join scans cyclically, from the source database or
+//straight from the CSV files. every invocation loads the next partition of the cycle
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PartitionLoadBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int scale;
+
+    @Param({ "jdbc", "csv" })
+    public String source;
+
+    @Param({ "200" })
+    public int partitionSize;
+
+    private BenchmarkData data;
+    private Connection connMaster;
+    private CsvMasterDataSource csvMasterData;
+    private MasterDataSource masterData;
+    private int customerCount;
+    private int productCount;
+    private int customerOffset;
+    private int productOffset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        data = BenchmarkData.create(scale);
+        if (source.equals("csv")) {
+            csvMasterData = new CsvMasterDataSource(data.csvDirectory().resolve("customers.csv"),
+                    data.csvDirectory().resolve("products.csv"));
+            masterData = csvMasterData;
+        } else {
+            connMaster = data.openSource();
+            masterData = new JdbcMasterDataSource(connMaster);
+        }
+        customerCount = masterData.customerCount();
+        productCount = masterData.productCount();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (csvMasterData != null) {
+            csvMasterData.close();
+        }
+        if (connMaster != null) {
+            connMaster.close();
+        }
+        data.close();
+    }
+
+    @Benchmark
+    public List<Customer> loadCustomerPartition(RowCounter counter) throws Exception {
+        List<Customer> partition = masterData.loadCustomers(customerOffset, partitionSize);
+        customerOffset += partitionSize;
+        if (customerOffset >= customerCount) {
+            customerOffset = 0;
+        }
+        counter.rows += partition.size();
+        return partition;
+    }
+
+    @Benchmark
+    public List<Product> loadProductPartition(RowCounter counter) throws Exception {
+        List<Product> partition = masterData.loadProducts(productOffset, partitionSize);
+        productOffset += partitionSize;
+        if (productOffset >= productCount) {
+            productOffset = 0;
+        }
+        counter.rows += partition.size();
+        return partition;
+    }
+}
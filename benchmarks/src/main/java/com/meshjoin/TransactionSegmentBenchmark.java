@@ -0,0 +1,70 @@
+package com.meshjoin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//one keyset page of the transactions table read through TransactionReader.readTransactionSegment,
+//walking the table segment after segment and starting over at the end
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TransactionSegmentBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int scale;
+
+    @Param({ "200" })
+    public int segmentSize;
+
+    private BenchmarkData data;
+    private Connection connSource;
+    private PreparedStatement segmentStatement;
+    private int lastOrderId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        data = BenchmarkData.create(scale);
+        connSource = data.openSource();
+        segmentStatement = connSource.prepareStatement(TransactionReader.SEGMENT_QUERY);
+        lastOrderId = Integer.MIN_VALUE;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        segmentStatement.close();
+        connSource.close();
+        data.close();
+    }
+
+    @Benchmark
+    public TransactionChunk readTransactionSegment(RowCounter counter) throws Exception {
+        segmentStatement.setInt(1, lastOrderId);
+        segmentStatement.setInt(2, segmentSize);
+        TransactionChunk segment;
+        try (ResultSet rsTransactions = segmentStatement.executeQuery()) {
+            segment = TransactionReader.readTransactionSegment(rsTransactions, segmentSize);
+        }
+        lastOrderId = segment.size() < segmentSize ? Integer.MIN_VALUE : segment.orderId(segment.size() - 1);
+        counter.rows += segment.size();
+        return segment;
+    }
+}
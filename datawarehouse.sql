@@ -47,7 +47,7 @@ create table datawarehouse.timee(
     
 create table datawarehouse.sales(
 	ORDER_ID INT PRIMARY KEY,
---     ORDER_DATE DATE,
+    ORDER_DATE DATE,
     QUANTITY INT,
 	CUSTOMER_ID INT,
     PRODUCT_ID INT,
@@ -66,3 +66,124 @@ create table datawarehouse.sales(
 
 
 
+-- progress of the ETL loads: per load and warehouse writer, the ORDER_ID up to which every transaction
+-- has been loaded, written in the same transaction as the sales rows it covers
+create table datawarehouse.etl_checkpoint(
+    LOAD_NAME VARCHAR(64),
+    WRITER INT,
+    LAST_ORDER_ID INT,
+    LAST_ORDER_DATE DATE,
+    UPDATED_AT TIMESTAMP,
+    PRIMARY KEY (LOAD_NAME, WRITER)
+    );
+
+
+
+-- summary tables the reports in Queries.sql read instead of scanning sales joined to timee, kept up to
+-- date by the ETL in the same transactions as the sales rows. the calendar attributes are those of the
+-- fact's ORDER_DATE, DAY_TYPE is Weekday or Weekend and SEASON is Spring, Summer, Fall or Winter.
+-- every ETL writer keeps its own rows, told apart by STRIPE, so the reports sum over it.
+-- a warehouse created before sales had ORDER_DATE needs
+--   ALTER TABLE datawarehouse.sales ADD COLUMN ORDER_DATE DATE AFTER ORDER_ID;
+-- and a load with --mode=full to fill it in
+create table datawarehouse.sales_product_month(
+    PRODUCT_ID INT,
+    YEAR INT,
+    MONTH INT,
+    DAY_TYPE VARCHAR(7),
+    STRIPE INT,
+    TOTAL_SALES DECIMAL(14,2),
+    QUANTITY BIGINT,
+    SALES_COUNT BIGINT,
+    PRIMARY KEY (PRODUCT_ID, YEAR, MONTH, DAY_TYPE, STRIPE)
+    );
+
+create table datawarehouse.sales_store_quarter(
+    STORE_ID INT,
+    YEAR INT,
+    QUARTER INT,
+    STRIPE INT,
+    TOTAL_SALES DECIMAL(14,2),
+    QUANTITY BIGINT,
+    SALES_COUNT BIGINT,
+    PRIMARY KEY (STORE_ID, YEAR, QUARTER, STRIPE)
+    );
+
+create table datawarehouse.sales_store_supplier_product(
+    STORE_ID INT,
+    SUPPLIER_ID INT,
+    PRODUCT_ID INT,
+    STRIPE INT,
+    TOTAL_SALES DECIMAL(14,2),
+    QUANTITY BIGINT,
+    SALES_COUNT BIGINT,
+    PRIMARY KEY (STORE_ID, SUPPLIER_ID, PRODUCT_ID, STRIPE)
+    );
+
+create table datawarehouse.sales_product_season(
+    PRODUCT_ID INT,
+    SEASON VARCHAR(6),
+    STRIPE INT,
+    TOTAL_SALES DECIMAL(14,2),
+    QUANTITY BIGINT,
+    SALES_COUNT BIGINT,
+    PRIMARY KEY (PRODUCT_ID, SEASON, STRIPE)
+    );
+
+create table datawarehouse.sales_store_supplier_month(
+    STORE_ID INT,
+    SUPPLIER_ID INT,
+    YEAR INT,
+    MONTH INT,
+    STRIPE INT,
+    TOTAL_SALES DECIMAL(14,2),
+    QUANTITY BIGINT,
+    SALES_COUNT BIGINT,
+    PRIMARY KEY (STORE_ID, SUPPLIER_ID, YEAR, MONTH, STRIPE)
+    );
+
+
+
+-- rebuild of the summary tables from sales, what the ETL runs at the start of a load with --mode=full or
+-- --cubes=rebuild. facts without an ORDER_DATE only count in sales_store_supplier_product
+delete from datawarehouse.sales_product_month;
+insert into datawarehouse.sales_product_month (PRODUCT_ID, YEAR, MONTH, DAY_TYPE, STRIPE, TOTAL_SALES, QUANTITY, SALES_COUNT)
+    select PRODUCT_ID, YEAR(ORDER_DATE), MONTH(ORDER_DATE),
+        CASE WHEN DAYOFWEEK(ORDER_DATE) IN (1, 7) THEN 'Weekend' ELSE 'Weekday' END,
+        0, SUM(TOTAL_SALES), SUM(QUANTITY), COUNT(*)
+    from datawarehouse.sales
+    where ORDER_DATE IS NOT NULL
+    group by PRODUCT_ID, YEAR(ORDER_DATE), MONTH(ORDER_DATE),
+        CASE WHEN DAYOFWEEK(ORDER_DATE) IN (1, 7) THEN 'Weekend' ELSE 'Weekday' END;
+
+delete from datawarehouse.sales_store_quarter;
+insert into datawarehouse.sales_store_quarter (STORE_ID, YEAR, QUARTER, STRIPE, TOTAL_SALES, QUANTITY, SALES_COUNT)
+    select STORE_ID, YEAR(ORDER_DATE), QUARTER(ORDER_DATE), 0, SUM(TOTAL_SALES), SUM(QUANTITY), COUNT(*)
+    from datawarehouse.sales
+    where ORDER_DATE IS NOT NULL
+    group by STORE_ID, YEAR(ORDER_DATE), QUARTER(ORDER_DATE);
+
+delete from datawarehouse.sales_store_supplier_product;
+insert into datawarehouse.sales_store_supplier_product (STORE_ID, SUPPLIER_ID, PRODUCT_ID, STRIPE, TOTAL_SALES, QUANTITY, SALES_COUNT)
+    select STORE_ID, SUPPLIER_ID, PRODUCT_ID, 0, SUM(TOTAL_SALES), SUM(QUANTITY), COUNT(*)
+    from datawarehouse.sales
+    group by STORE_ID, SUPPLIER_ID, PRODUCT_ID;
+
+delete from datawarehouse.sales_product_season;
+insert into datawarehouse.sales_product_season (PRODUCT_ID, SEASON, STRIPE, TOTAL_SALES, QUANTITY, SALES_COUNT)
+    select PRODUCT_ID,
+        CASE WHEN MONTH(ORDER_DATE) IN (3, 4, 5) THEN 'Spring' WHEN MONTH(ORDER_DATE) IN (6, 7, 8) THEN 'Summer'
+            WHEN MONTH(ORDER_DATE) IN (9, 10, 11) THEN 'Fall' ELSE 'Winter' END,
+        0, SUM(TOTAL_SALES), SUM(QUANTITY), COUNT(*)
+    from datawarehouse.sales
+    where ORDER_DATE IS NOT NULL
+    group by PRODUCT_ID,
+        CASE WHEN MONTH(ORDER_DATE) IN (3, 4, 5) THEN 'Spring' WHEN MONTH(ORDER_DATE) IN (6, 7, 8) THEN 'Summer'
+            WHEN MONTH(ORDER_DATE) IN (9, 10, 11) THEN 'Fall' ELSE 'Winter' END;
+
+delete from datawarehouse.sales_store_supplier_month;
+insert into datawarehouse.sales_store_supplier_month (STORE_ID, SUPPLIER_ID, YEAR, MONTH, STRIPE, TOTAL_SALES, QUANTITY, SALES_COUNT)
+    select STORE_ID, SUPPLIER_ID, YEAR(ORDER_DATE), MONTH(ORDER_DATE), 0, SUM(TOTAL_SALES), SUM(QUANTITY), COUNT(*)
+    from datawarehouse.sales
+    where ORDER_DATE IS NOT NULL
+    group by STORE_ID, SUPPLIER_ID, YEAR(ORDER_DATE), MONTH(ORDER_DATE);
@@ -0,0 +1,37 @@
+package com.meshjoin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvTransactionStreamTest {
+
+    @Test
+    void emptyOrderDateIsReadAsNoDate(@TempDir Path dir) throws IOException, SQLException {
+        Path file = dir.resolve("transactions.csv");
+        Files.writeString(file, "Order ID,Order Date,ProductID,Quantity Ordered,customer_id,time_id\n"
+                + "1,2019-04-01 03:09:00,10,2,5,1\n"
+                + "2,,11,1,6,2\n"
+                + "3, ,12,3,7,3\n");
+
+        try (CsvTransactionStream stream = new CsvTransactionStream(file, 10)) {
+            TransactionChunk chunk = stream.nextChunk();
+            assertEquals(3, chunk.size());
+            assertEquals(Date.valueOf("2019-04-01"), TransactionChunk.orderDate(chunk.epochDay(0)));
+            assertEquals(TransactionChunk.NO_DATE, chunk.epochDay(1));
+            assertEquals(TransactionChunk.NO_DATE, chunk.epochDay(2));
+            assertNull(TransactionChunk.orderDate(chunk.epochDay(1)));
+            assertEquals(12, chunk.productId(2));
+            assertTrue(stream.nextChunk().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.meshjoin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IntIntHashMapTest {
+
+    private static final int MISSING = -1;
+
+    @Test
+    void removeShiftsCollidingRunsBackAcrossTheEndOfTheTable() {
+        //a table of 32 slots; six keys that all hash to slot 30 run over its end into slots 0 to 3,
+        //where two keys of home slot 0 and 1 have to be pushed behind them
+        IntIntHashMap map = new IntIntHashMap(16, MISSING);
+        List<Integer> chain = keysWithHome(30, 6);
+        List<Integer> displaced = new ArrayList<>();
+        displaced.addAll(keysWithHome(0, 1));
+        displaced.addAll(keysWithHome(1, 1));
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int key : chain) {
+            map.put(key, key + 1);
+            expected.put(key, key + 1);
+        }
+        for (int key : displaced) {
+            map.put(key, key + 1);
+            expected.put(key, key + 1);
+        }
+        assertMap(expected, map);
+
+        //removing from the start, the middle and the end of the run, then putting the keys back
+        for (int index : new int[] { 0, 3, 5, 1 }) {
+            map.remove(chain.get(index));
+            expected.remove(chain.get(index));
+            assertMap(expected, map);
+        }
+        map.remove(displaced.get(0));
+        expected.remove(displaced.get(0));
+        assertMap(expected, map);
+        for (int key : chain) {
+            map.put(key, key + 2);
+            expected.put(key, key + 2);
+            assertMap(expected, map);
+        }
+    }
+
+    @Test
+    void behavesLikeAHashMapUnderChurn() {
+        Random random = new Random(42);
+        IntIntHashMap map = new IntIntHashMap(4, MISSING);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            //a small key range keeps the table turning over; Integer.MIN_VALUE is the map's free-slot marker
+            int key = random.nextInt(50) == 0 ? Integer.MIN_VALUE : random.nextInt(300) - 150;
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.put(key, i);
+                expected.put(key, i);
+            }
+            assertEquals(expected.getOrDefault(key, MISSING), map.get(key));
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = -150; key < 150; key++) {
+            assertEquals(expected.getOrDefault(key, MISSING), map.get(key));
+        }
+    }
+
+    private static void assertMap(Map<Integer, Integer> expected, IntIntHashMap map) {
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()), "key " + entry.getKey());
+        }
+    }
+
+    //the first keys whose home slot in a 32-slot table is home, by the hash IntIntHashMap uses
+    private static List<Integer> keysWithHome(int home, int count) {
+        List<Integer> keys = new ArrayList<>();
+        for (int key = 1; keys.size() < count; key++) {
+            int h = key * 0x9E3779B9;
+            if (((h ^ (h >>> 16)) & 31) == home) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,100 @@
+package com.meshjoin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class LoadSchedulerTest {
+
+    private static Connection connSource;
+
+    @BeforeAll
+    static void createSource() throws SQLException {
+        connSource = DriverManager.getConnection("jdbc:h2:mem:split;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+        try (Statement stmt = connSource.createStatement()) {
+            stmt.execute("CREATE TABLE products (PRODUCT_ID INT PRIMARY KEY, PRODUCT_NAME VARCHAR(255),"
+                    + " PRODUCT_PRICE DECIMAL(10,2), SUPPLIER_ID INT, SUPPLIER_NAME VARCHAR(255), STORE_ID INT,"
+                    + " STORE_NAME VARCHAR(255))");
+            stmt.execute("CREATE TABLE transactions (ORDER_ID INT PRIMARY KEY, ORDER_DATE DATE, PRODUCT_ID INT,"
+                    + " QUANTITY INT, CUSTOMER_ID INT, TIME_ID INT)");
+            //product 13 has no store, so like product 99, which is missing from the products table, it joins nothing
+            stmt.execute("INSERT INTO products VALUES (10, 'a', 1.00, 1, 's1', 1, 'store 1'),"
+                    + " (11, 'b', 2.00, 1, 's1', 2, 'store 2'), (12, 'c', 3.00, 2, 's2', 1, 'store 1'),"
+                    + " (13, 'd', 4.00, 2, 's2', NULL, NULL)");
+            stmt.execute("INSERT INTO transactions VALUES (1, DATE '2019-04-01', 10, 1, 5, 1),"
+                    + " (2, DATE '2019-04-30', 11, 1, 5, 2), (3, DATE '2019-05-01', 12, 1, 5, 3),"
+                    + " (4, NULL, 10, 1, 5, 4), (5, DATE '2019-08-15', 13, 1, 5, 5), (6, DATE '2019-09-02', 99, 1, 5, 6),"
+                    + " (7, NULL, 99, 1, 5, 7), (8, DATE '1819-04-01', 11, 1, 5, 8), (9, DATE '2019-07-31', NULL, 1, 5, 9)");
+        }
+    }
+
+    @AfterAll
+    static void dropSource() throws SQLException {
+        connSource.close();
+    }
+
+    @Test
+    void storeRunsTogetherJoinLikeOneRun() throws SQLException {
+        List<LoadScope> scopes = LoadScheduler.plan(connSource, EtlConfig.Split.STORE);
+        assertEquals("[store-1, store-2, store-none]", scopes.toString());
+        assertEquals(matches(LoadScope.ALL), splitMatches(scopes));
+    }
+
+    @Test
+    void productsWithoutAStoreAreNotJoined() throws SQLException {
+        assertEquals(-1, matches(LoadScope.ALL).get(5));
+        assertEquals(-1, matches(LoadScope.noStore()).get(5));
+    }
+
+    @Test
+    void monthRunsTogetherJoinLikeOneRun() throws SQLException {
+        List<LoadScope> scopes = LoadScheduler.plan(connSource, EtlConfig.Split.MONTH);
+        assertEquals("[1819-04, 2019-04, 2019-05, 2019-07, 2019-08, 2019-09, no-date]", scopes.toString());
+        assertEquals(matches(LoadScope.ALL), splitMatches(scopes));
+    }
+
+    @Test
+    void quarterRunsTogetherJoinLikeOneRun() throws SQLException {
+        List<LoadScope> scopes = LoadScheduler.plan(connSource, EtlConfig.Split.QUARTER);
+        assertEquals("[1819-q2, 2019-q2, 2019-q3, no-date]", scopes.toString());
+        assertEquals(matches(LoadScope.ALL), splitMatches(scopes));
+    }
+
+    //the ORDER_IDs of all runs with the product each one joins, failing on an ORDER_ID read twice
+    private static Map<Integer, Integer> splitMatches(List<LoadScope> scopes) throws SQLException {
+        Map<Integer, Integer> matches = new HashMap<>();
+        for (LoadScope scope : scopes) {
+            matches(scope).forEach((orderId, productId) ->
+                    assertNull(matches.put(orderId, productId), "ORDER_ID " + orderId + " read twice"));
+        }
+        return matches;
+    }
+
+    //ORDER_ID -> PRODUCT_ID of the master row it joins in a run of the scope, -1 when it ends unmatched
+    private static Map<Integer, Integer> matches(LoadScope scope) throws SQLException {
+        Map<Integer, Integer> products = new HashMap<>();
+        for (Product product : new JdbcMasterDataSource(connSource, scope).loadProducts(0, 100)) {
+            products.put(product.getProductId(), product.getProductId());
+        }
+        Map<Integer, Integer> matches = new HashMap<>();
+        try (TransactionReader reader = new TransactionReader(connSource, 2, Integer.MIN_VALUE, scope)) {
+            for (TransactionChunk chunk = reader.nextChunk(); !chunk.isEmpty(); chunk = reader.nextChunk()) {
+                for (int row = 0; row < chunk.size(); row++) {
+                    matches.put(chunk.orderId(row), products.getOrDefault(chunk.productId(row), -1));
+                }
+            }
+        }
+        return matches;
+    }
+}
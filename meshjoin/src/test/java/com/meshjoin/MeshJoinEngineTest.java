@@ -0,0 +1,268 @@
+package com.meshjoin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+class MeshJoinEngineTest {
+
+    private static final int CUSTOMERS = 50;
+    private static final int PRODUCTS = 40;
+    private static final int TRANSACTIONS = 600;
+    private static final int SHARDS = 3;
+
+    @Test
+    void everyTupleLeavesTheShardedWindowExactlyOnce() throws Exception {
+        //every 25th transaction has no customer, every 40th no product
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 1; i <= TRANSACTIONS; i++) {
+            int customerId = i % 25 == 0 ? 1000 + i : i * 7 % CUSTOMERS + 1;
+            int productId = i % 40 == 0 ? 2000 + i : i * 3 % PRODUCTS + 1;
+            transactions.add(new Transaction(i, null, productId, 1, customerId, i));
+        }
+        InMemoryMasterData masterData = new InMemoryMasterData(CUSTOMERS, PRODUCTS);
+        Result result = run(masterData, transactions, "--retry-cycles=1");
+
+        for (Transaction transaction : transactions) {
+            int orderId = transaction.getOrderId();
+            boolean customerKnown = transaction.getCustomerId() <= CUSTOMERS;
+            boolean productKnown = transaction.getProductId() <= PRODUCTS;
+            if (customerKnown && productKnown) {
+                Match match = result.matches.get(orderId);
+                assertEquals(transaction.getCustomerId(), match.customer.getCustomerId());
+                assertEquals(transaction.getProductId(), match.product.getProductId());
+                assertNull(result.unmatched.get(orderId));
+            } else {
+                assertEquals(customerKnown ? "product" : productKnown ? "customer" : "customer+product",
+                        result.unmatched.get(orderId), "ORDER_ID " + orderId);
+                assertFalse(result.matches.containsKey(orderId));
+            }
+        }
+        assertEquals(TRANSACTIONS, result.matches.size() + result.unmatched.size());
+        assertEquals(TRANSACTIONS, result.lastWatermark);
+    }
+
+    @Test
+    void masterRowsAppendedDuringTheLoadJoinOnRetry() throws Exception {
+        //products 41 to 45 arrive once the stream is under way, after the first tuples that need them
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 1; i <= TRANSACTIONS; i++) {
+            int productId = i % 30 == 0 ? PRODUCTS + 1 + i / 30 % 5 : i * 3 % PRODUCTS + 1;
+            transactions.add(new Transaction(i, null, productId, 1, i * 7 % CUSTOMERS + 1, i));
+        }
+        InMemoryMasterData masterData = new InMemoryMasterData(CUSTOMERS, PRODUCTS);
+        masterData.appendProductsAfter(200, 5);
+        Result result = run(masterData, transactions, "--retry-cycles=3");
+
+        assertTrue(result.unmatched.isEmpty(), result.unmatched.toString());
+        assertEquals(TRANSACTIONS, result.matches.size());
+        for (Transaction transaction : transactions) {
+            assertEquals(transaction.getProductId(), result.matches.get(transaction.getOrderId()).product.getProductId());
+        }
+    }
+
+    @Test
+    void tupleBufferGrowsAcrossTheWrapOfItsSequenceNumbers() {
+        TransactionChunk chunk = new TransactionChunk(40);
+        for (int i = 0; i < 40; i++) {
+            chunk.add(100 + i, i == 3 ? TransactionChunk.NO_DATE : 18000 + i, 200 + i, i + 1, 300 + i, 400 + i);
+        }
+        MeshJoinEngine.TupleBuffer buffer = new MeshJoinEngine.TupleBuffer(4);
+        buffer.head = Integer.MAX_VALUE - 2;
+        buffer.tail = Integer.MAX_VALUE - 2;
+
+        //three tuples before the wrap, the rest after it, growing 4 -> 8 -> 16 on the way
+        List<Integer> sequences = new ArrayList<>();
+        for (int row = 0; row < 10; row++) {
+            sequences.add(buffer.append(chunk, row));
+        }
+        assertEquals(List.of(Integer.MAX_VALUE - 2, Integer.MAX_VALUE - 1, Integer.MAX_VALUE, 0, 1, 2, 3, 4, 5, 6),
+                sequences);
+        for (int row = 0; row < 10; row++) {
+            assertTuple(chunk, row, buffer.transaction(sequences.get(row)));
+        }
+        assertNull(buffer.transaction(sequences.get(3)).getOrderDate());
+
+        //turning over as a FIFO, then growing again with the head past the wrap
+        for (int row = 0; row < 6; row++) {
+            buffer.removeFirst();
+        }
+        assertEquals(106, buffer.minOrderId());
+        for (int row = 10; row < 40; row++) {
+            sequences.add(buffer.append(chunk, row));
+        }
+        for (int row = 6; row < 40; row++) {
+            assertEquals(sequences.get(row), buffer.head);
+            assertTuple(chunk, row, buffer.transaction(buffer.head));
+            buffer.removeFirst();
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    private static void assertTuple(TransactionChunk chunk, int row, Transaction transaction) {
+        assertEquals(chunk.orderId(row), transaction.getOrderId());
+        assertEquals(TransactionChunk.orderDate(chunk.epochDay(row)), transaction.getOrderDate());
+        assertEquals(chunk.productId(row), transaction.getProductId());
+        assertEquals(chunk.quantity(row), transaction.getQuantity());
+        assertEquals(chunk.customerId(row), transaction.getCustomerId());
+        assertEquals(chunk.timeId(row), transaction.getTimeId());
+    }
+
+    //runs the join with small partitions and chunks, so the window expires and the scan cycles many times
+    private static Result run(InMemoryMasterData masterData, List<Transaction> transactions, String retries)
+            throws Exception {
+        EtlConfig config = EtlConfig.fromArgs(new String[] { "--customer-partition=7", "--product-partition=6",
+                "--stream-chunk=13", retries });
+        Result result = new Result();
+        List<MeshJoinEngine.JoinSink> sinks = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            sinks.add(new RecordingSink(i, result));
+        }
+        MeshJoinEngine.TransactionStream stream = new MeshJoinEngine.TransactionStream() {
+            private int next;
+
+            @Override
+            public TransactionChunk nextChunk() {
+                TransactionChunk segment = new TransactionChunk(5);
+                for (; next < transactions.size() && segment.size() < 5; next++) {
+                    Transaction t = transactions.get(next);
+                    segment.add(t.getOrderId(), TransactionChunk.NO_DATE, t.getProductId(), t.getQuantity(),
+                            t.getCustomerId(), t.getTimeId());
+                }
+                masterData.streamed(next);
+                return segment;
+            }
+        };
+        try (MeshJoinEngine engine = new MeshJoinEngine(masterData, JoinSizing.plan(masterData, config), sinks,
+                result::unmatched, config, new EtlMetrics())) {
+            engine.run(stream);
+        }
+        return result;
+    }
+
+    private static final class Match {
+        private final Customer customer;
+        private final Product product;
+
+        Match(Customer customer, Product product) {
+            this.customer = customer;
+            this.product = product;
+        }
+    }
+
+    private static final class Result {
+        private final Map<Integer, Match> matches = new TreeMap<>();
+        private final Map<Integer, String> unmatched = new TreeMap<>();
+        //the shard every CUSTOMER_ID was emitted by
+        private final Map<Integer, Integer> shardOfCustomer = new HashMap<>();
+        private int lastWatermark = Integer.MIN_VALUE;
+
+        synchronized void match(int shard, Transaction transaction, Customer customer, Product product) {
+            assertNull(matches.put(transaction.getOrderId(), new Match(customer, product)),
+                    "ORDER_ID " + transaction.getOrderId() + " matched twice");
+            Integer previous = shardOfCustomer.put(transaction.getCustomerId(), shard);
+            assertTrue(previous == null || previous == shard, "CUSTOMER_ID " + transaction.getCustomerId()
+                    + " emitted by shards " + previous + " and " + shard);
+        }
+
+        synchronized void unmatched(Transaction transaction, boolean customerFound, boolean productFound) {
+            String missing = !customerFound && !productFound ? "customer+product" : customerFound ? "product" : "customer";
+            assertNull(unmatched.put(transaction.getOrderId(), missing),
+                    "ORDER_ID " + transaction.getOrderId() + " spilled twice");
+        }
+
+        synchronized void expired(int lowWatermark) {
+            assertTrue(lowWatermark >= lastWatermark, "watermark went back from " + lastWatermark + " to " + lowWatermark);
+            lastWatermark = lowWatermark;
+        }
+    }
+
+    private static final class RecordingSink implements MeshJoinEngine.JoinSink {
+        private final int shard;
+        private final Result result;
+
+        RecordingSink(int shard, Result result) {
+            this.shard = shard;
+            this.result = result;
+        }
+
+        @Override
+        public void onMatch(Transaction transaction, Customer customer, Product product) {
+            result.match(shard, transaction, customer, product);
+        }
+
+        @Override
+        public void onChunkExpired(int lowWatermark) {
+            result.expired(lowWatermark);
+        }
+    }
+
+    //customers 1..n and products 1..m in key order; products can be appended once the stream has
+    //delivered a given number of transactions, as rows inserted into the source during a load
+    private static final class InMemoryMasterData implements MasterDataSource {
+        private final List<Customer> customers = new ArrayList<>();
+        private final List<Product> products = new ArrayList<>();
+        private int appendAfter = Integer.MAX_VALUE;
+        private int appendCount;
+
+        InMemoryMasterData(int customerCount, int productCount) {
+            for (int i = 1; i <= customerCount; i++) {
+                customers.add(new Customer(i, "customer " + i, "F"));
+            }
+            for (int i = 1; i <= productCount; i++) {
+                products.add(product(i));
+            }
+        }
+
+        void appendProductsAfter(int transactions, int count) {
+            appendAfter = transactions;
+            appendCount = count;
+        }
+
+        void streamed(int transactions) {
+            if (transactions >= appendAfter) {
+                int first = products.size() + 1;
+                for (int i = first; i < first + appendCount; i++) {
+                    products.add(product(i));
+                }
+                appendAfter = Integer.MAX_VALUE;
+            }
+        }
+
+        private static Product product(int id) {
+            return new Product(id, "product " + id, 1.5, id % 3 + 1, "store", id % 4 + 1, "supplier");
+        }
+
+        @Override
+        public int customerCount() {
+            return customers.size();
+        }
+
+        @Override
+        public int productCount() {
+            return products.size();
+        }
+
+        @Override
+        public List<Customer> loadCustomers(int offset, int limit) throws SQLException {
+            return new ArrayList<>(customers.subList(Math.min(offset, customers.size()),
+                    Math.min(customers.size(), offset + limit)));
+        }
+
+        @Override
+        public List<Product> loadProducts(int offset, int limit) throws SQLException {
+            return new ArrayList<>(products.subList(Math.min(offset, products.size()),
+                    Math.min(products.size(), offset + limit)));
+        }
+    }
+}
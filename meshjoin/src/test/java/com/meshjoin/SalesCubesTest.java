@@ -0,0 +1,148 @@
+package com.meshjoin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+class SalesCubesTest {
+
+    private static final String URL = "jdbc:h2:mem:cubes;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=YEAR,MONTH,QUARTER";
+    private static final String CREATE_SALES = "CREATE TABLE sales (ORDER_ID INT PRIMARY KEY, ORDER_DATE DATE, QUANTITY INT,"
+            + " CUSTOMER_ID INT, PRODUCT_ID INT, STORE_ID INT, SUPPLIER_ID INT, TIME_ID INT, TOTAL_SALES DECIMAL(10,2))";
+
+    @Test
+    void factsReplayedAfterARestartAreCountedOnce() throws SQLException {
+        try (Connection connWarehouse = DriverManager.getConnection(URL);
+             Statement stmt = connWarehouse.createStatement()) {
+            stmt.execute(CREATE_SALES);
+            List<Transaction> transactions = new ArrayList<>();
+            for (int orderId = 1; orderId <= 12; orderId++) {
+                Date orderDate = Date.valueOf("2019-0" + (orderId % 3 + 4) + "-1" + orderId % 7);
+                transactions.add(new Transaction(orderId, orderDate, orderId % 4, orderId % 3 + 1, orderId % 5, orderId));
+            }
+
+            //the first run commits facts 1 to 8 and stops, the restart replays the chunk from fact 5 on
+            load(connWarehouse, transactions.subList(0, 8), 0);
+            load(connWarehouse, transactions.subList(4, 12), 1);
+
+            assertEquals(12, count(stmt, "SELECT COUNT(*) FROM sales"));
+            for (SalesCubes.Cube cube : SalesCubes.Cube.values()) {
+                assertEquals(12, count(stmt, "SELECT SUM(SALES_COUNT) FROM " + cube.getTable()), cube.getTable());
+                assertEquals(sum(stmt, "SELECT SUM(TOTAL_SALES) FROM sales"),
+                        sum(stmt, "SELECT SUM(TOTAL_SALES) FROM " + cube.getTable()), cube.getTable());
+            }
+            String cube = "SELECT STORE_ID, SUPPLIER_ID, PRODUCT_ID, SUM(TOTAL_SALES), SUM(QUANTITY), SUM(SALES_COUNT)"
+                    + " FROM sales_store_supplier_product GROUP BY STORE_ID, SUPPLIER_ID, PRODUCT_ID";
+            String facts = "SELECT STORE_ID, SUPPLIER_ID, PRODUCT_ID, SUM(TOTAL_SALES), SUM(QUANTITY), COUNT(*)"
+                    + " FROM sales GROUP BY STORE_ID, SUPPLIER_ID, PRODUCT_ID";
+            assertEquals(0, count(stmt, "SELECT COUNT(*) FROM ((" + cube + ") EXCEPT (" + facts + "))"));
+            assertEquals(0, count(stmt, "SELECT COUNT(*) FROM ((" + facts + ") EXCEPT (" + cube + "))"));
+            assertRebuildKeepsSummaries(connWarehouse, stmt);
+        }
+    }
+
+    @Test
+    void factsReplayedWithOtherValuesMoveInTheSummaries() throws SQLException {
+        try (Connection connWarehouse = DriverManager.getConnection(URL.replace("cubes", "replays"));
+             Statement stmt = connWarehouse.createStatement()) {
+            stmt.execute(CREATE_SALES);
+            List<Transaction> transactions = new ArrayList<>();
+            List<Transaction> corrected = new ArrayList<>();
+            for (int orderId = 1; orderId <= 12; orderId++) {
+                Date orderDate = Date.valueOf("2019-0" + (orderId % 3 + 4) + "-1" + orderId % 7);
+                transactions.add(new Transaction(orderId, orderDate, orderId % 4, orderId % 3 + 1, orderId % 5, orderId));
+                //the source corrected product, quantity and date of the facts from 5 on, fact 6 lost its date
+                Date correctedDate = orderId == 6 ? null : Date.valueOf("2019-1" + orderId % 3 + "-2" + orderId % 7);
+                corrected.add(new Transaction(orderId, correctedDate, orderId % 3, orderId % 4 + 2, orderId % 5, orderId));
+            }
+
+            load(connWarehouse, transactions.subList(0, 8), 0);
+            load(connWarehouse, corrected.subList(4, 12), 1);
+
+            assertEquals(12, count(stmt, "SELECT COUNT(*) FROM sales"));
+            assertEquals(12, count(stmt, "SELECT SUM(SALES_COUNT) FROM sales_store_supplier_product"));
+            assertEquals(11, count(stmt, "SELECT SUM(SALES_COUNT) FROM sales_product_month"));
+            assertEquals(count(stmt, "SELECT SUM(QUANTITY) FROM sales"),
+                    count(stmt, "SELECT SUM(QUANTITY) FROM sales_store_supplier_product"));
+            assertRebuildKeepsSummaries(connWarehouse, stmt);
+        }
+    }
+
+    //the summaries the writers kept are the ones rebuilt from sales
+    private static void assertRebuildKeepsSummaries(Connection connWarehouse, Statement stmt) throws SQLException {
+        Map<String, Map<String, String>> kept = new TreeMap<>();
+        for (SalesCubes.Cube cube : SalesCubes.Cube.values()) {
+            kept.put(cube.getTable(), summary(stmt, cube.getTable()));
+        }
+        SalesCubes.rebuild(connWarehouse);
+        for (SalesCubes.Cube cube : SalesCubes.Cube.values()) {
+            assertEquals(kept.get(cube.getTable()), summary(stmt, cube.getTable()), cube.getTable());
+        }
+    }
+
+    //TOTAL_SALES, QUANTITY and SALES_COUNT summed over the stripes, by key; keys whose facts all moved to
+    //other keys sum to nothing and are left out
+    private static Map<String, String> summary(Statement stmt, String table) throws SQLException {
+        Map<String, long[]> sums = new TreeMap<>();
+        try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + table)) {
+            int stripe = rs.findColumn("STRIPE");
+            while (rs.next()) {
+                StringBuilder key = new StringBuilder();
+                for (int column = 1; column < stripe; column++) {
+                    key.append(rs.getString(column)).append('|');
+                }
+                long[] sum = sums.computeIfAbsent(key.toString(), k -> new long[3]);
+                sum[0] += rs.getBigDecimal("TOTAL_SALES").movePointRight(2).longValueExact();
+                sum[1] += rs.getLong("QUANTITY");
+                sum[2] += rs.getLong("SALES_COUNT");
+            }
+        }
+        Map<String, String> summary = new TreeMap<>();
+        for (Map.Entry<String, long[]> sum : sums.entrySet()) {
+            if (sum.getValue()[2] != 0) {
+                summary.put(sum.getKey(), Arrays.toString(sum.getValue()));
+            }
+        }
+        return summary;
+    }
+
+    //one writer's run over the transactions in batches of three, committed after every batch
+    private static void load(Connection connWarehouse, List<Transaction> transactions, int stripe) throws SQLException {
+        SalesCubes cubes = SalesCubes.begin(connWarehouse);
+        try (FactWriter facts = new FactWriter(connWarehouse, 3, 1, LoadCheckpoint.disabled(),
+                cubes.stripe(connWarehouse, stripe))) {
+            for (Transaction transaction : transactions) {
+                int productId = transaction.getProductId();
+                facts.add(transaction, transaction.getQuantity() * 2.5, productId % 2 + 1, productId + 10);
+            }
+            facts.finish();
+        }
+        connWarehouse.setAutoCommit(true);
+    }
+
+    private static long count(Statement stmt, String query) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static double sum(Statement stmt, String query) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(query)) {
+            rs.next();
+            return rs.getDouble(1);
+        }
+    }
+}
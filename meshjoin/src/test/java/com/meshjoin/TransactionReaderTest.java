@@ -0,0 +1,37 @@
+package com.meshjoin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.Test;
+
+class TransactionReaderTest {
+
+    @Test
+    void nullOrderDateIsCarriedThroughAsNull() throws SQLException {
+        try (Connection connSource = DriverManager.getConnection("jdbc:h2:mem:reader;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+             Statement stmt = connSource.createStatement()) {
+            stmt.execute("CREATE TABLE transactions (ORDER_ID INT PRIMARY KEY, ORDER_DATE DATE, PRODUCT_ID INT,"
+                    + " QUANTITY INT, CUSTOMER_ID INT, TIME_ID INT)");
+            stmt.execute("INSERT INTO transactions VALUES (1, DATE '2019-04-01', 10, 2, 5, 1), (2, NULL, 11, 1, 6, 2),"
+                    + " (3, DATE '2019-04-02', 12, 3, 7, 3)");
+
+            try (TransactionReader reader = new TransactionReader(connSource, 10, Integer.MIN_VALUE)) {
+                TransactionChunk segment = reader.nextChunk();
+                assertEquals(3, segment.size());
+                assertEquals(Date.valueOf("2019-04-01"), segment.transaction(0).getOrderDate());
+                assertEquals(TransactionChunk.NO_DATE, segment.epochDay(1));
+                assertNull(segment.transaction(1).getOrderDate());
+                assertEquals(Date.valueOf("2019-04-02"), segment.transaction(2).getOrderDate());
+                assertTrue(reader.nextChunk().isEmpty());
+            }
+        }
+    }
+}
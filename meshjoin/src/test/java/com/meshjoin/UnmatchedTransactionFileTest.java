@@ -0,0 +1,39 @@
+package com.meshjoin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UnmatchedTransactionFileTest {
+
+    @Test
+    void resumedLoadAppendsAndFreshLoadStartsOver(@TempDir Path dir) throws IOException, SQLException {
+        Path path = dir.resolve("unmatched.csv");
+        try (UnmatchedTransactionFile unmatched = new UnmatchedTransactionFile(path, false)) {
+            unmatched.onUnmatched(new Transaction(1, null, 10, 1, 5, 1), true, false);
+        }
+        //the rows spilled before the checkpoint stay next to those of the resumed load, under one header
+        try (UnmatchedTransactionFile unmatched = new UnmatchedTransactionFile(path, true)) {
+            unmatched.onUnmatched(new Transaction(2, null, 11, 1, 6, 2), false, true);
+        }
+        List<String> lines = Files.readAllLines(path);
+        assertEquals(3, lines.size());
+        assertEquals("ORDER_ID,ORDER_DATE,PRODUCT_ID,QUANTITY,CUSTOMER_ID,TIME_ID,MISSING", lines.get(0));
+        assertEquals("1", lines.get(1).split(",")[0]);
+        assertEquals("2", lines.get(2).split(",")[0]);
+
+        //a load from the beginning that spills nothing leaves no rows of the earlier one behind
+        try (UnmatchedTransactionFile unmatched = new UnmatchedTransactionFile(path, false)) {
+            assertEquals(0, unmatched.getRows());
+        }
+        assertFalse(Files.exists(path));
+    }
+}
@@ -1,3 +1,4 @@
 module MeshJoinProject {
     requires java.sql;
+    requires java.management;
 }